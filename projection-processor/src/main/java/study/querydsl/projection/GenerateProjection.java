@@ -0,0 +1,18 @@
+package study.querydsl.projection;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * DTO 를 채우는 Querydsl 프로젝션 클래스({DTO 이름}Projection)를 컴파일 시점에 생성한다.
+ *
+ * 클래스에 붙이면 기본 생성자로 만든 뒤 필드 선언 순서대로 setter 를 직접 호출하는 코드를 만든다. (Projections.bean 대체)
+ * 생성자에 붙이면 그 생성자를 직접 호출하는 코드를 만든다. (Projections.constructor 대체)
+ * 어느 쪽이든 행마다 리플렉션을 사용하지 않는다.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.TYPE, ElementType.CONSTRUCTOR})
+public @interface GenerateProjection {
+}
@@ -0,0 +1,168 @@
+package study.querydsl.projection.processor;
+
+import study.querydsl.projection.GenerateProjection;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link GenerateProjection} 이 붙은 DTO 마다 FactoryExpressionBase 를 상속한 {DTO 이름}Projection 클래스를 만든다.
+ */
+@SupportedAnnotationTypes("study.querydsl.projection.GenerateProjection")
+public class ProjectionProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GenerateProjection.class)) {
+            try {
+                if (element.getKind() == ElementKind.CLASS) {
+                    generate((TypeElement) element, beanProperties((TypeElement) element), false);
+                } else if (element.getKind() == ElementKind.CONSTRUCTOR) {
+                    generate((TypeElement) element.getEnclosingElement(),
+                            ((ExecutableElement) element).getParameters(), true);
+                }
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "프로젝션 클래스를 생성하지 못했습니다: " + e.getMessage(), element);
+            }
+        }
+        return true;
+    }
+
+    private List<VariableElement> beanProperties(TypeElement type) {
+        List<VariableElement> fields = new ArrayList<>();
+        for (Element enclosed : type.getEnclosedElements()) {
+            if (enclosed.getKind() == ElementKind.FIELD
+                    && !enclosed.getModifiers().contains(Modifier.STATIC)
+                    && !enclosed.getModifiers().contains(Modifier.TRANSIENT)) {
+                fields.add((VariableElement) enclosed);
+            }
+        }
+        return fields;
+    }
+
+    private void generate(TypeElement dto, List<? extends VariableElement> properties, boolean useConstructor)
+            throws IOException {
+        String packageName = ((PackageElement) processingEnv.getElementUtils().getPackageOf(dto))
+                .getQualifiedName().toString();
+        String dtoName = dto.getQualifiedName().toString();
+        String className = dto.getSimpleName() + "Projection";
+
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(packageName + "." + className, dto).openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("import com.querydsl.core.types.Expression;");
+            out.println("import com.querydsl.core.types.FactoryExpressionBase;");
+            out.println("import com.querydsl.core.types.Visitor;");
+            out.println();
+            out.println("import java.util.Arrays;");
+            out.println("import java.util.Collections;");
+            out.println("import java.util.List;");
+            out.println();
+            out.println("/**");
+            //생성 파일의 인코딩은 빌드 환경에 따라 다를 수 있으므로 주석은 ASCII 로만 쓴다.
+            out.println(" * Projection for " + dtoName + ". Generated by ProjectionProcessor, do not edit.");
+            out.println(" */");
+            out.println("public class " + className + " extends FactoryExpressionBase<" + dtoName + "> {");
+            out.println();
+            out.println("    private static final long serialVersionUID = 1L;");
+            out.println();
+            out.println("    private final List<Expression<?>> args;");
+            out.println();
+
+            List<String> parameters = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            for (VariableElement property : properties) {
+                String name = property.getSimpleName().toString();
+                parameters.add("Expression<" + boxed(property.asType()) + "> " + name);
+                names.add(name);
+            }
+            out.println("    public " + className + "(" + String.join(", ", parameters) + ") {");
+            out.println("        super(" + dtoName + ".class);");
+            out.println("        this.args = Collections.unmodifiableList(Arrays.<Expression<?>>asList("
+                    + String.join(", ", names) + "));");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public List<Expression<?>> getArgs() {");
+            out.println("        return args;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    @SuppressWarnings(\"unchecked\")");
+            out.println("    public " + dtoName + " newInstance(Object... a) {");
+            if (useConstructor) {
+                List<String> arguments = new ArrayList<>();
+                for (int i = 0; i < properties.size(); i++) {
+                    arguments.add("(" + boxed(properties.get(i).asType()) + ") a[" + i + "]");
+                }
+                out.println("        return new " + dtoName + "(" + String.join(", ", arguments) + ");");
+            } else {
+                out.println("        " + dtoName + " bean = new " + dtoName + "();");
+                for (int i = 0; i < properties.size(); i++) {
+                    VariableElement property = properties.get(i);
+                    String set = "bean." + setterName(property) + "((" + boxed(property.asType()) + ") a[" + i + "]);";
+                    //primitive 필드는 null 이면 기본값을 그대로 둔다. (Projections.bean 과 같은 동작)
+                    if (property.asType().getKind().isPrimitive()) {
+                        out.println("        if (a[" + i + "] != null) {");
+                        out.println("            " + set);
+                        out.println("        }");
+                    } else {
+                        out.println("        " + set);
+                    }
+                }
+                out.println("        return bean;");
+            }
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public <R, C> R accept(Visitor<R, C> v, C context) {");
+            out.println("        return v.visit(this, context);");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private String boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    //lombok @Setter 와 같은 규칙: boolean 필드 isXxx 는 setXxx
+    private String setterName(VariableElement field) {
+        String name = field.getSimpleName().toString();
+        if (field.asType().getKind() == TypeKind.BOOLEAN
+                && name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2))) {
+            name = name.substring(2);
+        }
+        return "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -0,0 +1,78 @@
+package study.querydsl;
+
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Projections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberDtoProjection;
+import study.querydsl.dto.QMemberDto;
+
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * DB 에서 받은 한 행(Object[])을 MemberDto 로 만드는 비용만 비교한다.
+ * 쿼리 실행 비용은 방식과 상관없이 같으므로 제외했다.
+ *
+ * ./gradlew jmh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    private final Object[] row = {"member1", 10};
+
+    private FactoryExpression<MemberDto> bean;
+    private FactoryExpression<MemberDto> fields;
+    private FactoryExpression<MemberDto> constructor;
+    private FactoryExpression<MemberDto> queryProjection;
+    private FactoryExpression<MemberDto> generated;
+
+    @Setup
+    public void setup() {
+        bean = Projections.bean(MemberDto.class, member.username.as("name"), member.age);
+        fields = Projections.fields(MemberDto.class, member.username.as("name"), member.age);
+        constructor = Projections.constructor(MemberDto.class, member.username, member.age);
+        queryProjection = new QMemberDto(member.username, member.age);
+        generated = new MemberDtoProjection(member.username, member.age);
+    }
+
+    @Benchmark
+    public MemberDto bean() {
+        return bean.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto fields() {
+        return fields.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto constructor() {
+        return constructor.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto queryProjection() {
+        return queryProjection.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto generated() {
+        return generated.newInstance(row);
+    }
+}
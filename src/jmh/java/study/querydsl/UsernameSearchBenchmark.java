@@ -0,0 +1,132 @@
+package study.querydsl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import study.querydsl.repository.TrigramIndex;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * username 검색 방식 비교. (H2 메모리 DB, member 테이블만 사용)
+ * - like '%..%' 전체 스캔
+ * - like '..%' + username 인덱스
+ * - trigram 색인으로 후보 id 를 구한 뒤 id 조건 + like 확인
+ *
+ * ./gradlew jmh
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+//trigram 색인(HashSet<Long>)이 행 수에 비례해서 메모리를 쓴다.
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UsernameSearchBenchmark {
+
+    private static final int MAX_CANDIDATES = 1000;
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"ber12345"})
+    public String term;
+
+    @Param({"member12345"})
+    public String prefix;
+
+    private Connection connection;
+    private PreparedStatement like;
+    private PreparedStatement candidatesLike;
+    private final TrigramIndex index = new TrigramIndex();
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:username_benchmark", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table member (member_id bigint primary key, username varchar(255))");
+            statement.execute("create index idx_member_username on member (username)");
+        }
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("insert into member values (?, ?)")) {
+            for (long id = 1; id <= rows; id++) {
+                String username = "member" + id;
+                insert.setLong(1, id);
+                insert.setString(2, username);
+                insert.addBatch();
+                index.add(id, username);
+                if (id % 10_000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        like = connection.prepareStatement("select member_id from member where username like ?");
+        candidatesLike = connection.prepareStatement(
+                "select member_id from member where member_id = any(?) and username like ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public List<Long> containsLike() throws SQLException {
+        like.setString(1, "%" + term + "%");
+        return ids(like);
+    }
+
+    @Benchmark
+    public List<Long> prefixLike() throws SQLException {
+        like.setString(1, prefix + "%");
+        return ids(like);
+    }
+
+    @Benchmark
+    public List<Long> containsTrigram() throws SQLException {
+        Set<Long> candidates = index.candidates(term, MAX_CANDIDATES);
+        if (candidates == null) {
+            return containsLike();
+        }
+        candidatesLike.setObject(1, candidates.toArray(new Long[0]));
+        candidatesLike.setString(2, "%" + term + "%");
+        return ids(candidatesLike);
+    }
+
+    private List<Long> ids(PreparedStatement statement) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        }
+        return ids;
+    }
+}
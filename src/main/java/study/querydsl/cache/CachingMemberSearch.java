@@ -0,0 +1,155 @@
+package study.querydsl.cache;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.EntityChangeType;
+import study.querydsl.event.MemberBulkChangedEvent;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+import study.querydsl.event.TeamChangedEvent;
+import study.querydsl.repository.MemberRepository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static study.querydsl.cache.SearchCacheTags.ANY;
+
+/**
+ * search, searchPageSimple 결과를 캐시하는 MemberRepository 앞단.
+ *
+ * 읽기 전용 트랜잭션에서만 캐시를 사용한다. 쓰기 트랜잭션 안에서 호출되면 커밋되지 않은 값이 캐시되지 않도록 바로 조회한다.
+ * Member, Team 이벤트와 벌크 연산 이벤트가 오면 바뀐 회원의 팀과 나이대에 걸리는 항목만 지우고,
+ * 그 사이에 다른 트랜잭션이 이전 값을 다시 넣을 수 있으므로 트랜잭션이 끝난 뒤에 한 번 더 지운다.
+ */
+@Component
+public class CachingMemberSearch {
+
+    private final MemberRepository memberRepository;
+    private final TieredSearchCache cache;
+
+    //팀 프록시가 초기화되지 않은 회원 이벤트에서 팀 이름을 찾기 위해 조회 결과와 팀 이벤트로 채운다.
+    private final ConcurrentMap<Long, String> teamNames = new ConcurrentHashMap<>();
+
+    public CachingMemberSearch(MemberRepository memberRepository,
+                               ObjectProvider<SharedSearchCacheTier> sharedTier,
+                               @Value("${app.search-cache.maximum-size:10000}") int maximumSize,
+                               @Value("${app.search-cache.ttl:10m}") Duration ttl) {
+        this.memberRepository = memberRepository;
+        this.cache = new TieredSearchCache(new LocalSearchCacheTier(maximumSize, ttl), sharedTier.getIfAvailable());
+    }
+
+    @Transactional(readOnly = true)
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return memberRepository.search(condition);
+        }
+        return cache.get(SearchCacheKey.of("search", condition), () -> {
+            List<MemberTeamDto> result = memberRepository.search(condition);
+            rememberTeams(result);
+            return result;
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return memberRepository.searchPageSimple(condition, pageable);
+        }
+        return cache.get(SearchCacheKey.of("searchPageSimple", condition, pageable), () -> {
+            Page<MemberTeamDto> result = memberRepository.searchPageSimple(condition, pageable);
+            rememberTeams(result.getContent());
+            return result;
+        });
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        Set<String> tags = new HashSet<>();
+        addMemberTags(tags, event.getCurrent());
+        if (event.getPrevious() != null) {
+            addMemberTags(tags, event.getPrevious());
+        }
+        evict(tags);
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        //새 팀에는 아직 회원이 없으므로 지울 항목이 없다.
+        if (event.getType() == EntityChangeType.INSERT) {
+            teamNames.put(event.getTeamId(), event.getName());
+            return;
+        }
+
+        Set<String> tags = new HashSet<>();
+        tags.add(SearchCacheTags.team(ANY));
+        tags.add(SearchCacheTags.team(event.getName()));
+        String previousName = event.getPreviousName() != null ? event.getPreviousName() : teamNames.get(event.getTeamId());
+        if (previousName != null) {
+            tags.add(SearchCacheTags.team(previousName));
+        }
+
+        if (event.getType() == EntityChangeType.DELETE) {
+            teamNames.remove(event.getTeamId());
+        } else {
+            teamNames.put(event.getTeamId(), event.getName());
+        }
+        evict(tags);
+    }
+
+    @EventListener
+    public void onMemberBulkChanged(MemberBulkChangedEvent event) {
+        evict(SearchCacheTags.ageRangeTags(event.getAgeGoe(), event.getAgeLoe()));
+    }
+
+    private void addMemberTags(Set<String> tags, MemberState state) {
+        if (state.getTeamId() == null) {
+            SearchCacheTags.addTeamlessMemberTags(tags, state.getAge());
+            return;
+        }
+        String teamName = state.getTeamName() != null ? state.getTeamName() : teamNames.get(state.getTeamId());
+        SearchCacheTags.addMemberTags(tags, teamName, state.getAge());
+    }
+
+    //tags 가 null 이면 전체를 지운다.
+    private void evict(Collection<String> tags) {
+        evictNow(tags);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictNow(tags);
+                }
+            });
+        }
+    }
+
+    private void evictNow(Collection<String> tags) {
+        if (tags == null) {
+            cache.clear();
+        } else {
+            cache.evict(tags);
+        }
+    }
+
+    private void rememberTeams(List<MemberTeamDto> rows) {
+        for (MemberTeamDto row : rows) {
+            if (row.getTeamId() != null) {
+                teamNames.put(row.getTeamId(), row.getTeamName());
+            }
+        }
+    }
+}
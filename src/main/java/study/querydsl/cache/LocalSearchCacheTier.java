@@ -0,0 +1,108 @@
+package study.querydsl.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 노드 안에서만 쓰는 캐시 계층. 최대 개수를 넘으면 가장 오래 사용되지 않은 항목부터 지우고 (LRU),
+ * 저장 후 ttl 이 지난 항목은 조회할 때 버린다.
+ */
+public class LocalSearchCacheTier implements SearchCacheTier {
+
+    private final int maximumSize;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<SearchCacheKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<SearchCacheKey>> keysByTag = new HashMap<>();
+
+    public LocalSearchCacheTier(int maximumSize, Duration ttl) {
+        this.maximumSize = maximumSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    @Override
+    public synchronized Object get(SearchCacheKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.writtenAt > ttlNanos) {
+            remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    @Override
+    public synchronized void put(SearchCacheKey key, Object value) {
+        remove(key);
+        entries.put(key, new Entry(value, System.nanoTime()));
+        for (String tag : key.getTags()) {
+            keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+        }
+
+        Iterator<SearchCacheKey> eldest = entries.keySet().iterator();
+        while (entries.size() > maximumSize && eldest.hasNext()) {
+            SearchCacheKey evicted = eldest.next();
+            eldest.remove();
+            unindex(evicted);
+        }
+    }
+
+    @Override
+    public synchronized void evict(Collection<String> tags) {
+        for (String tag : tags) {
+            Set<SearchCacheKey> keys = keysByTag.remove(tag);
+            if (keys == null) {
+                continue;
+            }
+            for (SearchCacheKey key : keys) {
+                remove(key);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        keysByTag.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void remove(SearchCacheKey key) {
+        if (entries.remove(key) != null) {
+            unindex(key);
+        }
+    }
+
+    private void unindex(SearchCacheKey key) {
+        for (String tag : key.getTags()) {
+            Set<SearchCacheKey> keys = keysByTag.get(tag);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByTag.remove(tag);
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long writtenAt;
+
+        Entry(Object value, long writtenAt) {
+            this.value = value;
+            this.writtenAt = writtenAt;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package study.querydsl.cache;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 검색 결과 캐시의 키. 조건과 페이지 정보가 같으면 같은 키이다.
+ * tags 는 이 결과가 어떤 팀, 어떤 나이대(10살 단위)의 회원을 포함할 수 있는지를 나타내며 무효화에 사용된다.
+ */
+@Getter
+@ToString(of = {"method", "condition", "pageable"})
+@EqualsAndHashCode(of = {"method", "condition", "pageable"})
+public final class SearchCacheKey {
+
+    private final String method;
+    private final MemberSearchCondition condition;
+    private final Pageable pageable;
+    private final Set<String> tags;
+
+    private SearchCacheKey(String method, MemberSearchCondition condition, Pageable pageable) {
+        this.method = method;
+        this.condition = condition.copy();
+        this.pageable = pageable;
+        this.tags = Collections.unmodifiableSet(tagsOf(this.condition));
+    }
+
+    public static SearchCacheKey of(String method, MemberSearchCondition condition) {
+        return new SearchCacheKey(method, condition, null);
+    }
+
+    public static SearchCacheKey of(String method, MemberSearchCondition condition, Pageable pageable) {
+        return new SearchCacheKey(method, condition, pageable);
+    }
+
+    private static Set<String> tagsOf(MemberSearchCondition condition) {
+        String team = hasText(condition.getTeamName()) ? condition.getTeamName() : SearchCacheTags.ANY;
+
+        Set<String> tags = new LinkedHashSet<>();
+        tags.add(SearchCacheTags.team(team));
+        for (String band : SearchCacheTags.bands(condition.getAgeGoe(), condition.getAgeLoe())) {
+            tags.add(SearchCacheTags.band(band));
+            tags.add(SearchCacheTags.teamBand(team, band));
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,101 @@
+package study.querydsl.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 캐시 항목에 붙는 태그 규칙.
+ *
+ * 항목은 "team:{팀명}", "band:{나이대}", "team:{팀명}|band:{나이대}" 태그를 가진다.
+ * 조건에 팀이나 나이 범위가 없으면 {팀명}, {나이대} 자리에 ANY 가 들어간다.
+ * 회원 하나가 바뀌면 그 회원의 팀과 나이대에 걸리는 태그만 지우면 된다.
+ */
+public final class SearchCacheTags {
+
+    public static final String ANY = "*";
+
+    //나이 범위가 이보다 넓으면 나이대를 나열하지 않고 ANY 로 본다.
+    static final int MAX_BANDS = 16;
+
+    private SearchCacheTags() {
+    }
+
+    public static String team(String team) {
+        return "team:" + team;
+    }
+
+    public static String band(String band) {
+        return "band:" + band;
+    }
+
+    public static String teamBand(String team, String band) {
+        return team(team) + "|" + band(band);
+    }
+
+    public static int bandOf(int age) {
+        return Math.max(age, 0) / 10;
+    }
+
+    static List<String> bands(Integer ageGoe, Integer ageLoe) {
+        if (ageGoe == null || ageLoe == null) {
+            return Collections.singletonList(ANY);
+        }
+        int from = bandOf(ageGoe);
+        int to = bandOf(ageLoe);
+        if (to < from) {
+            return Collections.emptyList();
+        }
+        if (to - from + 1 > MAX_BANDS) {
+            return Collections.singletonList(ANY);
+        }
+        List<String> bands = new ArrayList<>();
+        for (int band = from; band <= to; band++) {
+            bands.add(String.valueOf(band));
+        }
+        return bands;
+    }
+
+    /**
+     * 팀과 나이를 가진 회원이 바뀌었을 때 지워야 하는 태그.
+     * team 이 null 이면 팀을 알 수 없는 것으로 보고 그 나이대의 모든 항목을 지운다.
+     */
+    public static void addMemberTags(Collection<String> tags, String team, int age) {
+        String band = String.valueOf(bandOf(age));
+        if (team == null) {
+            tags.add(band(band));
+            tags.add(band(ANY));
+            return;
+        }
+        tags.add(teamBand(team, band));
+        tags.add(teamBand(team, ANY));
+        tags.add(teamBand(ANY, band));
+        tags.add(teamBand(ANY, ANY));
+    }
+
+    /**
+     * 팀이 없는 회원은 팀 조건이 없는 항목에만 나타난다.
+     */
+    public static void addTeamlessMemberTags(Collection<String> tags, int age) {
+        String band = String.valueOf(bandOf(age));
+        tags.add(teamBand(ANY, band));
+        tags.add(teamBand(ANY, ANY));
+    }
+
+    /**
+     * 나이 범위 안의 회원이 팀과 상관없이 바뀌었을 때 지워야 하는 태그. 범위가 너무 넓으면 null 을 반환한다.
+     */
+    public static Collection<String> ageRangeTags(Integer ageGoe, Integer ageLoe) {
+        List<String> bands = bands(ageGoe == null ? 0 : ageGoe, ageLoe);
+        if (bands.contains(ANY)) {
+            return null;
+        }
+        List<String> tags = new ArrayList<>();
+        for (String band : bands) {
+            tags.add(band(band));
+        }
+        tags.add(band(ANY));
+        return tags;
+    }
+}
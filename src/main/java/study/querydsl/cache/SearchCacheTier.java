@@ -0,0 +1,24 @@
+package study.querydsl.cache;
+
+import java.util.Collection;
+
+/**
+ * 검색 결과 캐시의 저장 계층.
+ * 구현체는 항목을 key.getTags() 로 색인해서 evict(tags) 로 지울 수 있어야 한다.
+ */
+public interface SearchCacheTier {
+
+    /**
+     * @return 캐시된 값, 없거나 만료되었으면 null
+     */
+    Object get(SearchCacheKey key);
+
+    void put(SearchCacheKey key, Object value);
+
+    /**
+     * 주어진 태그 중 하나라도 가진 항목을 모두 지운다.
+     */
+    void evict(Collection<String> tags);
+
+    void clear();
+}
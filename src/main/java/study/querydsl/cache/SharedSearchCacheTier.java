@@ -0,0 +1,13 @@
+package study.querydsl.cache;
+
+/**
+ * 여러 노드가 함께 쓰는 캐시 계층의 SPI. (Redis 등)
+ * 스프링 빈으로 등록하면 CachingMemberSearch 가 로컬 계층 뒤에 붙여서 사용한다.
+ *
+ * 다른 노드에서 일어난 evict/clear 는 subscribe 로 등록된 로컬 계층에도 전달되어야 한다.
+ * 값을 직렬화하는 구현체라면 Page, MemberTeamDto 를 그대로 저장할 수 있어야 한다.
+ */
+public interface SharedSearchCacheTier extends SearchCacheTier {
+
+    void subscribe(SearchCacheTier local);
+}
@@ -0,0 +1,98 @@
+package study.querydsl.cache;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 로컬 계층과 (있으면) 공유 계층을 차례로 조회하고, 둘 다 없을 때만 loader 를 실행한다.
+ *
+ * 같은 키를 동시에 조회하면 한 스레드만 loader 를 실행하고 나머지는 그 결과를 기다린다.
+ * loader 실행 중에 무효화가 일어나면 결과를 돌려주기만 하고 캐시에는 넣지 않는다.
+ */
+public class TieredSearchCache {
+
+    private final SearchCacheTier local;
+    private final SharedSearchCacheTier shared;
+
+    private final ConcurrentMap<SearchCacheKey, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public TieredSearchCache(SearchCacheTier local, SharedSearchCacheTier shared) {
+        this.local = local;
+        this.shared = shared;
+        if (shared != null) {
+            shared.subscribe(local);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(SearchCacheKey key, Supplier<T> loader) {
+        Object value = local.get(key);
+        if (value != null) {
+            return (T) value;
+        }
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = loading.putIfAbsent(key, mine);
+        if (inFlight != null) {
+            return (T) join(inFlight);
+        }
+
+        try {
+            long startedAt = generation.get();
+            value = shared != null ? shared.get(key) : null;
+            if (value == null) {
+                value = loader.get();
+                if (generation.get() == startedAt && shared != null) {
+                    shared.put(key, value);
+                }
+            }
+            if (generation.get() == startedAt) {
+                local.put(key, value);
+            }
+            mine.complete(value);
+            return (T) value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    public void evict(Collection<String> tags) {
+        generation.incrementAndGet();
+        local.evict(tags);
+        if (shared != null) {
+            shared.evict(tags);
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        local.clear();
+        if (shared != null) {
+            shared.clear();
+        }
+    }
+
+    private Object join(CompletableFuture<Object> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
-import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.transaction.Transactional;
@@ -18,10 +20,13 @@ public class InitMember {
 
 
     private final InitMemberService initMemberService;
+    private final TaskExecutor taskExecutor;
 
-    @PostConstruct
+    //기동이 끝난 뒤 백그라운드에서 데이터를 넣어서 요청을 받기 시작하는 시점을 늦추지 않는다.
+    //@PostConstruct 는 lazy-initialization 에서는 빈이 만들어지지 않아 실행되지 않는다.
+    @EventListener(ApplicationReadyEvent.class)
     public void init(){
-        initMemberService.init();
+        taskExecutor.execute(initMemberService::init);
     }
 
     @Component
@@ -44,5 +49,3 @@ public class InitMember {
         }
     }
 }
-
-
@@ -0,0 +1,53 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.AsyncMemberSearch;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequiredArgsConstructor
+public class MemberController {
+
+    private final MemberRepository memberRepository;
+    private final AsyncMemberSearch asyncMemberSearch;
+
+    //요청 스레드가 쿼리가 끝날 때까지 기다린다.
+    @GetMapping("/v1/members")
+    public Page<MemberTeamDto> searchMemberV1(MemberSearchCondition condition, Pageable pageable){
+        return memberRepository.searchPageSimple(condition, pageable);
+    }
+
+    //쿼리는 AsyncMemberSearch 스레드에서 실행되고 요청 스레드는 바로 반환된다.
+    @GetMapping("/v2/members")
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV2(MemberSearchCondition condition, Pageable pageable){
+        return asyncMemberSearch.searchPageSimple(condition, pageable);
+    }
+
+    //조회 대기열이 가득 찼을 때
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> rejected(RejectedExecutionException e){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("조회 요청이 많아 처리할 수 없습니다. 잠시 후 다시 시도해 주세요.");
+    }
+
+    //허용되지 않은 정렬 속성 등
+    @ExceptionHandler(InvalidDataAccessApiUsageException.class)
+    public ResponseEntity<String> badRequest(InvalidDataAccessApiUsageException e){
+        return ResponseEntity.badRequest().body(e.getMostSpecificCause().getMessage());
+    }
+}
@@ -0,0 +1,61 @@
+package study.querydsl.datasource;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * 쓰기 트랜잭션이 커밋된 뒤 windowMillis 동안은 같은 세션의 읽기도 primary 로 보내기 위해 마지막 쓰기 시각을 기억한다.
+ * (복제가 늦어서 방금 쓴 값이 replica 에 아직 없을 수 있다)
+ *
+ * 세션은 HTTP 세션이 있으면 HTTP 세션, 없으면 요청, 요청 밖(또는 이미 끝난 요청)에서는 스레드 단위다.
+ */
+class ReadYourWrites {
+
+    private static final String ATTRIBUTE = ReadYourWrites.class.getName() + ".LAST_WRITE";
+
+    private final long windowMillis;
+    private final ThreadLocal<Long> threadLastWrite = new ThreadLocal<>();
+
+    ReadYourWrites(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    void markWrite() {
+        long now = System.currentTimeMillis();
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            try {
+                attributes.setAttribute(ATTRIBUTE, now, scope(attributes));
+                return;
+            } catch (IllegalStateException e) {
+                //요청이 이미 끝났다. (비동기 작업 스레드로 넘어온 경우)
+            }
+        }
+        threadLastWrite.set(now);
+    }
+
+    boolean isSticky() {
+        Long lastWrite = threadLastWrite.get();
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            try {
+                Long requestLastWrite = (Long) attributes.getAttribute(ATTRIBUTE, scope(attributes));
+                if (requestLastWrite != null && (lastWrite == null || requestLastWrite > lastWrite)) {
+                    lastWrite = requestLastWrite;
+                }
+            } catch (IllegalStateException e) {
+                //요청이 이미 끝났다.
+            }
+        }
+        return lastWrite != null && System.currentTimeMillis() - lastWrite < windowMillis;
+    }
+
+    private static int scope(RequestAttributes attributes) {
+        if (attributes instanceof ServletRequestAttributes
+                && ((ServletRequestAttributes) attributes).getRequest().getSession(false) != null) {
+            return RequestAttributes.SCOPE_SESSION;
+        }
+        return RequestAttributes.SCOPE_REQUEST;
+    }
+}
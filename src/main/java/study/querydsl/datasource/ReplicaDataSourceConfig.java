@@ -0,0 +1,55 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * app.datasource.replica.urls 가 있으면 기본 데이터소스 대신 ReplicaRoutingDataSource 를 쓴다.
+ * primary 는 spring.datasource.* 설정 그대로, replica 는 url 만 다르고 드라이버와 계정은 primary 와 같다.
+ *
+ * DataSource 빈을 직접 등록하므로 부트의 데이터소스 자동 설정은 물러난다.
+ *
+ * open-in-view 가 켜져 있으면 요청 범위 EntityManager 가 처음 잡은 커넥션을 요청이 끝날 때까지 모든 트랜잭션에 쓰므로
+ * 라우팅과 read-your-writes 가 동작하지 않는다. 그래서 spring.jpa.open-in-view=false 가 아니면 기동을 멈춘다.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "app.datasource.replica", name = "urls")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource dataSource(DataSourceProperties properties,
+                                               @Value("${app.datasource.replica.urls}") List<String> urls,
+                                               @Value("${app.datasource.replica.read-your-writes-millis:1000}") long readYourWritesMillis,
+                                               @Value("${spring.jpa.open-in-view:true}") boolean openInView) {
+        if (openInView) {
+            throw new IllegalStateException("replica 라우팅(app.datasource.replica.urls)을 쓰려면 spring.jpa.open-in-view=false 로 설정해야 합니다.");
+        }
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("primary");
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, new ReadYourWrites(readYourWritesMillis));
+    }
+}
@@ -0,0 +1,109 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))의 커넥션은 replica 들에 번갈아 보내고, 나머지는 primary 로 보낸다.
+ *
+ * 트랜잭션의 readOnly 여부는 트랜잭션이 시작된 뒤에야 알 수 있으므로 LazyConnectionDataSourceProxy 로 감싸서
+ * 실제 커넥션을 첫 쿼리를 실행할 때 가져온다. (JpaTransactionManager 는 트랜잭션 시작 때 커넥션을 요청한다)
+ *
+ * 같은 세션에서 쓰기 트랜잭션이 커밋된 직후(ReadYourWrites)에는 읽기 전용이어도 primary 로 보낸다.
+ * 읽기/쓰기 트랜잭션 안에서 호출한 readOnly 메서드는 바깥 트랜잭션에 참여하므로 primary 를 그대로 쓴다.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final ReadYourWrites readYourWrites;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final AtomicLong primaryConnections = new AtomicLong();
+    private final AtomicLongArray replicaConnections;
+
+    ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, ReadYourWrites readYourWrites) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.readYourWrites = readYourWrites;
+        this.replicaConnections = new AtomicLongArray(replicas.size());
+
+        Router router = new Router();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int replica = 0; replica < replicas.size(); replica++) {
+            targets.put(replica, replicas.get(replica));
+        }
+        router.setTargetDataSources(targets);
+        router.setDefaultTargetDataSource(primary);
+        router.afterPropertiesSet();
+        setTargetDataSource(router);
+    }
+
+    @Override
+    public void close() {
+        primary.close();
+        replicas.forEach(HikariDataSource::close);
+    }
+
+    public int replicaCount() {
+        return replicas.size();
+    }
+
+    /**
+     * primary 에서 가져간 커넥션 수.
+     */
+    public long primaryConnections() {
+        return primaryConnections.get();
+    }
+
+    public long replicaConnections(int replica) {
+        return replicaConnections.get(replica);
+    }
+
+    private Object route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()
+                    && TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        readYourWrites.markWrite();
+                    }
+                });
+            }
+            primaryConnections.incrementAndGet();
+            return PRIMARY;
+        }
+
+        if (replicas.isEmpty() || readYourWrites.isSticky()) {
+            primaryConnections.incrementAndGet();
+            return PRIMARY;
+        }
+
+        int replica = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        replicaConnections.incrementAndGet(replica);
+        return replica;
+    }
+
+    private class Router extends AbstractRoutingDataSource {
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            return route();
+        }
+    }
+}
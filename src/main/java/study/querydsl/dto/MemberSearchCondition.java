@@ -10,4 +10,20 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+
+    //username 비교 방법, null 이면 EXACT
+    private UsernameMatch usernameMatch;
+
+    /**
+     * 캐시 키처럼 나중에 값이 바뀌면 안 되는 곳에서 사용할 복사본.
+     */
+    public MemberSearchCondition copy() {
+        MemberSearchCondition copy = new MemberSearchCondition();
+        copy.setUsername(username);
+        copy.setTeamName(teamName);
+        copy.setAgeGoe(ageGoe);
+        copy.setAgeLoe(ageLoe);
+        copy.setUsernameMatch(usernameMatch);
+        return copy;
+    }
 }
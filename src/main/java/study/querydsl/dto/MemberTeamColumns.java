@@ -0,0 +1,159 @@
+package study.querydsl.dto;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 많은 수의 MemberTeamDto 를 열(column) 단위 primitive 배열로 담는 결과 컨테이너.
+ *
+ * 행마다 객체 헤더, Long 박싱, 같은 팀 이름 문자열이 반복되지 않도록
+ * 회원 id 와 나이는 long[]/int[] 로, 팀은 사전(dictionary)의 번호(int)로 저장한다.
+ * 팀 수는 적기 때문에 팀 id 와 팀 이름은 팀마다 한 번만 저장된다.
+ *
+ * 행 단위로 사용해야 할 때는 toDto(row) 나 asList() 로 필요할 때만 DTO 를 만든다.
+ */
+public class MemberTeamColumns {
+
+    private static final int NO_TEAM = -1;
+
+    private long[] memberIds;
+    private String[] usernames;
+    private int[] ages;
+    private int[] teamCodes;
+    private int size;
+
+    private long[] teamIds = new long[4];
+    private String[] teamNames = new String[4];
+    private int teamCount;
+    private final Map<Long, Integer> teamCodeById = new HashMap<>();
+
+    public MemberTeamColumns() {
+        this(16);
+    }
+
+    public MemberTeamColumns(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        memberIds = new long[capacity];
+        usernames = new String[capacity];
+        ages = new int[capacity];
+        teamCodes = new int[capacity];
+    }
+
+    public void add(long memberId, String username, int age, Long teamId, String teamName) {
+        if (size == memberIds.length) {
+            grow();
+        }
+        memberIds[size] = memberId;
+        usernames[size] = username;
+        ages[size] = age;
+        teamCodes[size] = teamCode(teamId, teamName);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long memberId(int row) {
+        checkRow(row);
+        return memberIds[row];
+    }
+
+    public String username(int row) {
+        checkRow(row);
+        return usernames[row];
+    }
+
+    public int age(int row) {
+        checkRow(row);
+        return ages[row];
+    }
+
+    public Long teamId(int row) {
+        checkRow(row);
+        int code = teamCodes[row];
+        return code == NO_TEAM ? null : teamIds[code];
+    }
+
+    public String teamName(int row) {
+        checkRow(row);
+        int code = teamCodes[row];
+        return code == NO_TEAM ? null : teamNames[code];
+    }
+
+    /**
+     * 서로 다른 팀의 수. (팀이 없는 회원은 세지 않는다)
+     */
+    public int teamCount() {
+        return teamCount;
+    }
+
+    public MemberTeamDto toDto(int row) {
+        return new MemberTeamDto(memberId(row), username(row), age(row), teamId(row), teamName(row));
+    }
+
+    /**
+     * 조회할 때마다 MemberTeamDto 를 새로 만드는 읽기 전용 뷰.
+     */
+    public List<MemberTeamDto> asList() {
+        return new AbstractList<MemberTeamDto>() {
+            @Override
+            public MemberTeamDto get(int index) {
+                return toDto(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * 다 채운 뒤 남는 배열 공간을 돌려준다.
+     */
+    public void trimToSize() {
+        memberIds = Arrays.copyOf(memberIds, size);
+        usernames = Arrays.copyOf(usernames, size);
+        ages = Arrays.copyOf(ages, size);
+        teamCodes = Arrays.copyOf(teamCodes, size);
+        teamIds = Arrays.copyOf(teamIds, teamCount);
+        teamNames = Arrays.copyOf(teamNames, teamCount);
+    }
+
+    private int teamCode(Long teamId, String teamName) {
+        if (teamId == null) {
+            return NO_TEAM;
+        }
+        Integer code = teamCodeById.get(teamId);
+        if (code != null) {
+            return code;
+        }
+        if (teamCount == teamIds.length) {
+            int capacity = Math.max(teamCount * 2, 4);
+            teamIds = Arrays.copyOf(teamIds, capacity);
+            teamNames = Arrays.copyOf(teamNames, capacity);
+        }
+        teamIds[teamCount] = teamId;
+        teamNames[teamCount] = teamName;
+        teamCodeById.put(teamId, teamCount);
+        return teamCount++;
+    }
+
+    private void grow() {
+        int capacity = memberIds.length + (memberIds.length >> 1) + 1;
+        memberIds = Arrays.copyOf(memberIds, capacity);
+        usernames = Arrays.copyOf(usernames, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        teamCodes = Arrays.copyOf(teamCodes, capacity);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+        }
+    }
+}
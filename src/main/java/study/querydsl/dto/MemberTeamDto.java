@@ -2,6 +2,7 @@ package study.querydsl.dto;
 
 import com.querydsl.core.annotations.QueryProjection;
 import lombok.Data;
+import study.querydsl.projection.GenerateProjection;
 
 @Data
 public class MemberTeamDto {
@@ -14,6 +15,7 @@ public class MemberTeamDto {
 
 
     @QueryProjection
+    @GenerateProjection
     public MemberTeamDto(Long memberId, String username, int age, Long teamId, String teamName) {
         this.memberId = memberId;
         this.username = username;
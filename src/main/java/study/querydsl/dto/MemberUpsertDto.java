@@ -0,0 +1,23 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * MemberUpsertService 에 넘기는 한 건. username 이 같은 회원이 있으면 age, 팀을 바꾸고 없으면 새로 만든다.
+ * teamName 이 null 이면 팀이 없는 회원이 된다.
+ */
+@Data
+@NoArgsConstructor
+public class MemberUpsertDto {
+
+    private String username;
+    private int age;
+    private String teamName;
+
+    public MemberUpsertDto(String username, int age, String teamName) {
+        this.username = username;
+        this.age = age;
+        this.teamName = teamName;
+    }
+}
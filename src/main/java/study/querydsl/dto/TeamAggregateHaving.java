@@ -0,0 +1,25 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/**
+ * aggregateByTeam 의 HAVING 조건. null 인 조건은 적용하지 않는다.
+ */
+@Data
+public class TeamAggregateHaving {
+
+    //회원 수, 평균 나이
+    private Long countGoe;
+    private Long countLoe;
+    private Double ageAvgGoe;
+    private Double ageAvgLoe;
+
+    public TeamAggregateHaving copy() {
+        TeamAggregateHaving copy = new TeamAggregateHaving();
+        copy.setCountGoe(countGoe);
+        copy.setCountLoe(countLoe);
+        copy.setAgeAvgGoe(ageAvgGoe);
+        copy.setAgeAvgLoe(ageAvgLoe);
+        return copy;
+    }
+}
@@ -0,0 +1,116 @@
+package study.querydsl.dto;
+
+import java.util.Arrays;
+
+/**
+ * 팀별 회원 집계 결과. 팀마다 Tuple 을 만들지 않고 값마다 primitive 배열 하나에 담는다.
+ * i 번째 팀의 값은 각 배열의 i 번째 칸에 있다. (팀 id 순)
+ */
+public class TeamAggregates {
+
+    private long[] teamIds;
+    private String[] teamNames;
+    private long[] counts;
+    private long[] ageSums;
+    private int[] ageMins;
+    private int[] ageMaxs;
+    private double[] ageAvgs;
+    private int size;
+
+    public TeamAggregates() {
+        this(16);
+    }
+
+    public TeamAggregates(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        teamIds = new long[capacity];
+        teamNames = new String[capacity];
+        counts = new long[capacity];
+        ageSums = new long[capacity];
+        ageMins = new int[capacity];
+        ageMaxs = new int[capacity];
+        ageAvgs = new double[capacity];
+    }
+
+    public void add(long teamId, String teamName, long count, long ageSum, int ageMin, int ageMax, double ageAvg) {
+        if (size == teamIds.length) {
+            grow();
+        }
+        teamIds[size] = teamId;
+        teamNames[size] = teamName;
+        counts[size] = count;
+        ageSums[size] = ageSum;
+        ageMins[size] = ageMin;
+        ageMaxs[size] = ageMax;
+        ageAvgs[size] = ageAvg;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 팀 이름으로 찾은 위치, 없으면 -1.
+     */
+    public int indexOf(String teamName) {
+        for (int i = 0; i < size; i++) {
+            if (teamNames[i].equals(teamName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public long teamId(int team) {
+        checkTeam(team);
+        return teamIds[team];
+    }
+
+    public String teamName(int team) {
+        checkTeam(team);
+        return teamNames[team];
+    }
+
+    public long count(int team) {
+        checkTeam(team);
+        return counts[team];
+    }
+
+    public long ageSum(int team) {
+        checkTeam(team);
+        return ageSums[team];
+    }
+
+    public int ageMin(int team) {
+        checkTeam(team);
+        return ageMins[team];
+    }
+
+    public int ageMax(int team) {
+        checkTeam(team);
+        return ageMaxs[team];
+    }
+
+    public double ageAvg(int team) {
+        checkTeam(team);
+        return ageAvgs[team];
+    }
+
+    private void grow() {
+        int capacity = teamIds.length + (teamIds.length >> 1) + 1;
+        teamIds = Arrays.copyOf(teamIds, capacity);
+        teamNames = Arrays.copyOf(teamNames, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        ageSums = Arrays.copyOf(ageSums, capacity);
+        ageMins = Arrays.copyOf(ageMins, capacity);
+        ageMaxs = Arrays.copyOf(ageMaxs, capacity);
+        ageAvgs = Arrays.copyOf(ageAvgs, capacity);
+    }
+
+    private void checkTeam(int team) {
+        if (team < 0 || team >= size) {
+            throw new IndexOutOfBoundsException("team: " + team + ", size: " + size);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package study.querydsl.dto;
+
+/**
+ * MemberSearchCondition.username 을 비교하는 방법.
+ */
+public enum UsernameMatch {
+
+    //username = ?
+    EXACT,
+    //username like '?%' (username 인덱스를 탄다)
+    PREFIX,
+    //username like '%?%' (trigram 인덱스로 후보를 먼저 줄인다)
+    CONTAINS
+}
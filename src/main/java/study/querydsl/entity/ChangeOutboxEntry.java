@@ -0,0 +1,54 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import study.querydsl.event.ChangeTarget;
+import study.querydsl.event.EntityChangeType;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Member, Team 변경을 같은 트랜잭션 안에서 남기는 outbox 행. (ChangeOutbox)
+ */
+@Entity
+@Table(name = "change_outbox")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class ChangeOutboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "change_outbox_seq_generator")
+    @SequenceGenerator(name = "change_outbox_seq_generator", sequenceName = "change_outbox_seq", allocationSize = 100)
+    @Column(name = "change_id")
+    private Long id;
+
+    //커밋 순서대로 매긴 위치. 소비자는 id 가 아니라 이 값으로 따라간다.
+    @Column(name = "commit_position", unique = true)
+    private Long commitPosition;
+
+    @Enumerated(EnumType.STRING)
+    private ChangeTarget entityType;
+
+    @Enumerated(EnumType.STRING)
+    private EntityChangeType changeType;
+
+    private Long entityId;
+    private Long minId;
+    private Long maxId;
+    private LocalDateTime createdAt;
+
+    public ChangeOutboxEntry(Long commitPosition, ChangeTarget entityType, EntityChangeType changeType,
+                             Long entityId, Long minId, Long maxId) {
+        this.commitPosition = commitPosition;
+        this.entityType = entityType;
+        this.changeType = changeType;
+        this.entityId = entityId;
+        this.minId = minId;
+        this.maxId = maxId;
+        this.createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,46 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * change_outbox 에 마지막으로 쓴 commitPosition. 행은 하나(id = 1)뿐이다.
+ * 커밋 직전에 이 행을 잠그고 위치를 받으므로, 먼저 받은 트랜잭션이 커밋된 뒤에야 다음 트랜잭션이 위치를 받는다. (ChangeOutbox)
+ */
+@Entity
+@Table(name = "change_outbox_position")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class ChangeOutboxPosition {
+
+    public static final Long ID = 1L;
+
+    @Id
+    private Long id;
+
+    @Column(name = "last_position")
+    private long lastPosition;
+
+    public static ChangeOutboxPosition first() {
+        ChangeOutboxPosition position = new ChangeOutboxPosition();
+        position.id = ID;
+        return position;
+    }
+
+    /**
+     * count 개의 위치를 받고 그 중 첫 번째를 돌려준다.
+     */
+    public long reserve(int count) {
+        long first = lastPosition + 1;
+        lastPosition += count;
+        return first;
+    }
+}
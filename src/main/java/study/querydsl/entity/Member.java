@@ -4,24 +4,37 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.Hibernate;
+import study.querydsl.event.MemberTeamEntityListener;
 
 import javax.persistence.*;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        //나이 정렬 + member_id 보조 정렬을 인덱스 순서대로 읽기 위한 인덱스
+        @Index(name = "idx_member_age_id", columnList = "age, member_id")
+})
+@EntityListeners(MemberTeamEntityListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
 @ToString(of = {"id", "username", "age"})
 public class Member {
 
+    //insert 를 배치로 묶을 수 있도록 시퀀스를 한 번에 allocationSize 만큼 가져온다.
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 100)
     @Column(name = "member_id")
     private Long id;
 
     private String username;
     private int age;
 
+    @Version
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "team_id")
     private Team team;
@@ -42,8 +55,21 @@ public class Member {
         }
     }
 
+    /**
+     * 지연 로딩된 회원 목록을 초기화하지 않도록 이미 로딩된 컬렉션에만 반영한다.
+     * 로딩되지 않은 컬렉션은 나중에 읽을 때 DB 의 team_id 기준으로 채워지므로 결과는 같다.
+     */
     public void changeTeam(Team team) {
+        if (isMemberListLoaded(this.team)) {
+            this.team.getMemberList().remove(this);
+        }
         this.team = team;
-        team.getMemberList().add(this);
+        if (isMemberListLoaded(team)) {
+            team.getMemberList().add(this);
+        }
+    }
+
+    private static boolean isMemberListLoaded(Team team) {
+        return team != null && Hibernate.isInitialized(team) && Hibernate.isInitialized(team.getMemberList());
     }
 }
@@ -0,0 +1,99 @@
+package study.querydsl.event;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.query.spi.EntityGraphQueryHint;
+import org.hibernate.engine.spi.QueryParameters;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.internal.ast.QueryTranslatorImpl;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 엔티티 리스너를 거치지 않는 Member 벌크 JPQL(update/delete/insert-select)을 하이버네이트가 실행하는 곳에서 잡아서
+ * MemberBulkChangedEvent 를 발행한다. JPAQueryFactory 로 직접 실행한 벌크 연산(QueryDslBasicTest 등)도 변경 피드에 남는다.
+ *
+ * 어떤 회원이 바뀌었는지는 알 수 없으므로 나이 범위는 제한 없이, id 범위는 전체(0 ~ Long.MAX_VALUE)로 알린다.
+ * MemberJpaRepository 처럼 범위를 직접 구해서 발행하는 쪽은 reported 로 감싸서 두 번 발행되지 않게 한다.
+ *
+ * 기본 EntityManagerFactory 에만 적용된다. (샤드는 HibernatePropertiesCustomizer 를 거치지 않는다)
+ */
+@Component
+public class BulkStatementCapture implements HibernatePropertiesCustomizer {
+
+    private static final ThreadLocal<Boolean> REPORTED = new ThreadLocal<>();
+
+    private final ApplicationEventPublisher publisher;
+
+    public BulkStatementCapture(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * work 안에서 실행되는 벌크 JPQL 은 호출하는 쪽이 MemberBulkChangedEvent 를 직접 발행한다.
+     */
+    public static <T> T reported(Supplier<T> work) {
+        Boolean outer = REPORTED.get();
+        REPORTED.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (outer == null) {
+                REPORTED.remove();
+            }
+        }
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.QUERY_TRANSLATOR, new CapturingQueryTranslatorFactory());
+    }
+
+    private void executed(String queryString, Collection<Serializable> querySpaces, SessionFactoryImplementor factory) {
+        if (REPORTED.get() != null) {
+            return;
+        }
+        Serializable[] memberSpaces = factory.getMetamodel().entityPersister(Member.class).getQuerySpaces();
+        if (Collections.disjoint(querySpaces, Arrays.asList(memberSpaces))) {
+            return;
+        }
+        String statement = queryString.trim().toLowerCase(Locale.ROOT);
+        EntityChangeType type = statement.startsWith("delete") ? EntityChangeType.DELETE
+                : statement.startsWith("insert") ? EntityChangeType.INSERT
+                : EntityChangeType.UPDATE;
+        publisher.publishEvent(new MemberBulkChangedEvent(type, null, null, 0L, Long.MAX_VALUE));
+    }
+
+    //하이버네이트는 QUERY_TRANSLATOR 에 인스턴스를 넘겨도 그대로 쓴다.
+    private class CapturingQueryTranslatorFactory extends ASTQueryTranslatorFactory {
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public QueryTranslator createQueryTranslator(String queryIdentifier, String queryString, Map filters,
+                                                     SessionFactoryImplementor factory,
+                                                     EntityGraphQueryHint entityGraphQueryHint) {
+            return new QueryTranslatorImpl(queryIdentifier, queryString, filters, factory, entityGraphQueryHint) {
+                @Override
+                public int executeUpdate(QueryParameters queryParameters, SharedSessionContractImplementor session)
+                        throws HibernateException {
+                    int count = super.executeUpdate(queryParameters, session);
+                    executed(queryString, getQuerySpaces(), factory);
+                    return count;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 커밋된 트랜잭션 하나의 Member, Team 변경을 일어난 순서대로 모은 이벤트. 커밋이 끝난 뒤에 발행된다. (ChangeOutbox)
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class ChangeBatchEvent {
+
+    private final List<ChangeRecord> changes;
+}
@@ -0,0 +1,199 @@
+package study.querydsl.event;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.ChangeOutboxEntry;
+import study.querydsl.entity.ChangeOutboxPosition;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static study.querydsl.entity.QChangeOutboxEntry.changeOutboxEntry;
+
+/**
+ * Member, Team 의 변경(엔티티 리스너 이벤트, 벌크 이벤트)을 트랜잭션마다 모아서 커밋 직전에 같은 트랜잭션으로
+ * change_outbox 테이블에 쓰고, 커밋된 뒤에 ChangeBatchEvent 하나로 발행한다. 롤백되면 아무것도 남지 않는다.
+ *
+ * 변경 이벤트는 커밋할 때의 flush 도중에도 나오는데 그때는 beforeCommit 이 이미 지나서 outbox 에 쓸 수 없다.
+ * 그래서 Member, Team 이 트랜잭션에 처음 들어올 때(로딩, persist, remove) 엔티티 리스너가 join 을 불러서
+ * 동기화를 미리 등록해두고, beforeCommit 에서 직접 flush 해서 남은 변경 이벤트를 먼저 받은 뒤 outbox 에 쓴다.
+ *
+ * 읽기/쓰기 트랜잭션 밖에서 받은 변경은 outbox 에 쓰지 않고 바로 발행한다.
+ *
+ * 행 id 는 시퀀스를 미리 할당받아 쓰므로 커밋 순서와 다르다. (노드마다, 동시에 도는 트랜잭션마다)
+ * 그래서 outbox 에 쓸 때 change_outbox_position 행을 잠그고 커밋 순서대로 위치(commitPosition)를 받는다.
+ * 잠금은 커밋할 때 풀리므로 outbox 에 쓰는 트랜잭션의 커밋은 한 번에 하나씩 이뤄진다.
+ * 운영처럼 스키마를 따로 관리하면 이 행을 미리 넣어둔다. (insert into change_outbox_position values (1, 0))
+ */
+@Slf4j
+@Component
+public class ChangeOutbox {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final ApplicationEventPublisher publisher;
+
+    public ChangeOutbox(EntityManager em, ApplicationEventPublisher publisher) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.publisher = publisher;
+    }
+
+    /**
+     * 현재 읽기/쓰기 트랜잭션의 변경을 모으기 시작한다. 여러 번 불러도 된다.
+     */
+    public void join() {
+        buffer();
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        record(ChangeRecord.of(ChangeTarget.MEMBER, event.getType(), event.getMemberId()));
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        record(ChangeRecord.of(ChangeTarget.TEAM, event.getType(), event.getTeamId()));
+    }
+
+    @EventListener
+    public void onMemberBulkChanged(MemberBulkChangedEvent event) {
+        record(ChangeRecord.bulk(ChangeTarget.MEMBER, event.getType(), event.getMinId(), event.getMaxId()));
+    }
+
+    /**
+     * position 다음부터 outbox 에 쌓인 변경을 커밋 순서대로. 놓친 배치를 따라잡을 때 쓴다.
+     * 위치는 커밋 순서대로 빈틈없이 매겨지므로 마지막으로 받은 변경의 position 을 다음 호출에 넘기면 빠지는 행이 없다.
+     */
+    @Transactional(readOnly = true)
+    public List<ChangeRecord> findAfter(long position, int limit) {
+        return queryFactory
+                .selectFrom(changeOutboxEntry)
+                .where(changeOutboxEntry.commitPosition.gt(position))
+                .orderBy(changeOutboxEntry.commitPosition.asc())
+                .limit(limit)
+                .fetch()
+                .stream()
+                .map(entry -> new ChangeRecord(entry.getId(), entry.getCommitPosition(), entry.getEntityType(),
+                        entry.getChangeType(), entry.getEntityId(), entry.getMinId(), entry.getMaxId()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * position 보다 앞선 outbox 행을 지운다. 모든 소비자가 따라잡은 position 을 넘긴다.
+     */
+    @Transactional
+    public long purgeBefore(long position) {
+        return queryFactory
+                .delete(changeOutboxEntry)
+                .where(changeOutboxEntry.commitPosition.lt(position))
+                .execute();
+    }
+
+    /**
+     * createdAt 이 time 보다 이른 outbox 행을 지운다. 보관 기간이 지난 행을 정리할 때 쓴다.
+     */
+    @Transactional
+    public long purgeCreatedBefore(LocalDateTime time) {
+        return queryFactory
+                .delete(changeOutboxEntry)
+                .where(changeOutboxEntry.createdAt.lt(time))
+                .execute();
+    }
+
+    private void record(ChangeRecord change) {
+        Buffer buffer = buffer();
+        if (buffer == null) {
+            publisher.publishEvent(new ChangeBatchEvent(Collections.singletonList(change)));
+            return;
+        }
+        if (buffer.written) {
+            log.debug("outbox 를 쓴 뒤에 들어온 변경이라 발행만 합니다. {}", change);
+        }
+        buffer.changes.add(change);
+    }
+
+    private Buffer buffer() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        Buffer buffer = (Buffer) TransactionSynchronizationManager.getResource(this);
+        if (buffer == null) {
+            buffer = new Buffer();
+            TransactionSynchronizationManager.bindResource(this, buffer);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        }
+        return buffer;
+    }
+
+    private class Buffer implements TransactionSynchronization {
+
+        private final List<ChangeRecord> changes = new ArrayList<>();
+        private boolean written;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            try {
+                //커밋할 때의 flush 에서 나올 변경 이벤트를 지금 받는다.
+                em.flush();
+
+                if (changes.isEmpty()) {
+                    written = true;
+                    return;
+                }
+                long position = reservePositions(changes.size());
+                for (int i = 0; i < changes.size(); i++) {
+                    ChangeRecord change = changes.get(i);
+                    ChangeOutboxEntry entry = new ChangeOutboxEntry(position + i, change.getTarget(), change.getType(),
+                            change.getEntityId(), change.getMinId(), change.getMaxId());
+                    em.persist(entry);
+                    changes.set(i, change.written(entry.getId(), entry.getCommitPosition()));
+                }
+                em.flush();
+                written = true;
+            } catch (RuntimeException e) {
+                //커밋할 때와 같은 예외(OptimisticLockingFailureException 등)로 바꿔서 던진다.
+                DataAccessException translated = EntityManagerFactoryUtils.convertJpaAccessExceptionIfPossible(e);
+                throw translated != null ? translated : e;
+            }
+        }
+
+        //커밋할 때까지 위치 행을 잠가두므로 다음 트랜잭션은 이 트랜잭션이 커밋된 뒤의 위치를 받는다.
+        private long reservePositions(int count) {
+            ChangeOutboxPosition position = em.find(ChangeOutboxPosition.class, ChangeOutboxPosition.ID,
+                    LockModeType.PESSIMISTIC_WRITE);
+            if (position == null) {
+                position = ChangeOutboxPosition.first();
+                em.persist(position);
+            }
+            return position.reserve(count);
+        }
+
+        @Override
+        public void afterCommit() {
+            if (!changes.isEmpty()) {
+                publisher.publishEvent(new ChangeBatchEvent(Collections.unmodifiableList(new ArrayList<>(changes))));
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ChangeOutbox.this);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * change_outbox 에 기록되는 변경 하나.
+ * 바뀐 값은 담지 않으므로 필요한 쪽에서 id 로 다시 읽는다.
+ *
+ * 엔티티 하나의 변경이면 entityId 가 있고 minId, maxId 는 entityId 와 같다.
+ * 벌크 변경이면 entityId 는 null 이고 minId ~ maxId 사이의 회원이 바뀌었을 수 있다. (대상이 없었으면 둘 다 null)
+ * changeId 는 outbox 행의 id, position 은 커밋 순서대로 매긴 outbox 위치다. (ChangeOutbox.findAfter 의 기준)
+ * outbox 에 쓰이지 않은 변경(트랜잭션 밖 등)은 둘 다 null 이다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class ChangeRecord {
+
+    private final Long changeId;
+    private final Long position;
+    private final ChangeTarget target;
+    private final EntityChangeType type;
+    private final Long entityId;
+    private final Long minId;
+    private final Long maxId;
+
+    public static ChangeRecord of(ChangeTarget target, EntityChangeType type, Long entityId) {
+        return new ChangeRecord(null, null, target, type, entityId, entityId, entityId);
+    }
+
+    public static ChangeRecord bulk(ChangeTarget target, EntityChangeType type, Long minId, Long maxId) {
+        return new ChangeRecord(null, null, target, type, null, minId, maxId);
+    }
+
+    public boolean isBulk() {
+        return entityId == null;
+    }
+
+    ChangeRecord written(Long changeId, Long position) {
+        return new ChangeRecord(changeId, position, target, type, entityId, minId, maxId);
+    }
+}
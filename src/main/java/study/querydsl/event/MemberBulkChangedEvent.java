@@ -0,0 +1,23 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 엔티티 리스너를 거치지 않는 Member 벌크 update/delete 뒤에 발행되는 이벤트.
+ * ageGoe, ageLoe 는 영향을 받은 (변경 전) 나이 범위이고, null 이면 그 방향으로 제한이 없다.
+ * minId, maxId 는 영향을 받았을 수 있는 회원 id 범위로 실행 전에 구한다. 대상이 없었으면 둘 다 null 이다.
+ * 범위를 모르는 벌크 JPQL(BulkStatementCapture)은 0 ~ Long.MAX_VALUE 로 알린다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class MemberBulkChangedEvent {
+
+    private final EntityChangeType type;
+    private final Integer ageGoe;
+    private final Integer ageLoe;
+    private final Long minId;
+    private final Long maxId;
+}
@@ -0,0 +1,21 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Member 엔티티가 flush 될 때 발행되는 이벤트.
+ * 영속성 컨텍스트 밖에서도 안전하게 쓸 수 있도록 엔티티 대신 값만 담는다.
+ * previous 는 UPDATE 일 때만 있고, 나머지는 null 이다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class MemberChangedEvent {
+
+    private final EntityChangeType type;
+    private final Long memberId;
+    private final MemberState current;
+    private final MemberState previous;
+}
@@ -0,0 +1,20 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 이벤트에 담기는 Member 의 값.
+ * teamName 은 팀 프록시가 아직 초기화되지 않았으면 알 수 없으므로 null 이다. (teamId 가 있을 때도)
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class MemberState {
+
+    private final String username;
+    private final int age;
+    private final Long teamId;
+    private final String teamName;
+}
@@ -0,0 +1,123 @@
+package study.querydsl.event;
+
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PrePersist;
+import javax.persistence.PreRemove;
+import javax.persistence.PreUpdate;
+
+/**
+ * Member, Team 의 변경을 스프링 이벤트로 발행하는 JPA 엔티티 리스너.
+ * 스프링 부트가 하이버네이트에 SpringBeanContainer 를 등록하기 때문에 생성자 주입을 받을 수 있다.
+ * 이벤트는 flush 도중에 동기로 발행되므로 리스너에서 EntityManager 를 사용하면 안 된다.
+ *
+ * EntityManager 는 EntityManagerFactory 생성 중에 이 리스너가 만들어지므로 @Lazy 로 받고,
+ * PreUpdate 시점에 아직 남아있는 하이버네이트의 로딩 시점 상태(loadedState)를 변경 전 값으로 사용한다.
+ *
+ * 엔티티가 트랜잭션에 처음 들어올 때(로딩, persist, remove) ChangeOutbox 가 변경을 모을 준비를 하게 한다.
+ * 샤드(MemberShards)의 EntityManagerFactory 에서는 JPA 콜백을 꺼두므로 기본 DB 의 변경만 여기로 온다.
+ */
+public class MemberTeamEntityListener {
+
+    private final ApplicationEventPublisher publisher;
+    private final EntityManager em;
+    private final ObjectProvider<ChangeOutbox> outboxProvider;
+    private volatile ChangeOutbox outbox;
+
+    public MemberTeamEntityListener(ApplicationEventPublisher publisher, @Lazy EntityManager em,
+                                    ObjectProvider<ChangeOutbox> outboxProvider) {
+        this.publisher = publisher;
+        this.em = em;
+        this.outboxProvider = outboxProvider;
+    }
+
+    @PostLoad
+    @PrePersist
+    @PreRemove
+    public void joinOutbox(Object entity) {
+        ChangeOutbox found = outbox;
+        if (found == null) {
+            found = outboxProvider.getObject();
+            outbox = found;
+        }
+        found.join();
+    }
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        publish(EntityChangeType.INSERT, entity);
+    }
+
+    @PreUpdate
+    public void preUpdate(Object entity) {
+        publish(EntityChangeType.UPDATE, entity);
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        publish(EntityChangeType.DELETE, entity);
+    }
+
+    private void publish(EntityChangeType type, Object entity) {
+        EntityEntry entry = type == EntityChangeType.UPDATE ? entityEntry(entity) : null;
+
+        if (entity instanceof Member) {
+            Member member = (Member) entity;
+            MemberState current = new MemberState(member.getUsername(), member.getAge(),
+                    teamId(member.getTeam()), teamName(member.getTeam()));
+            MemberState previous = null;
+            if (entry != null) {
+                Team previousTeam = (Team) loadedValue(entry, "team");
+                previous = new MemberState((String) loadedValue(entry, "username"), (Integer) loadedValue(entry, "age"),
+                        teamId(previousTeam), teamName(previousTeam));
+            }
+            publisher.publishEvent(new MemberChangedEvent(type, member.getId(), current, previous));
+        } else if (entity instanceof Team) {
+            Team team = (Team) entity;
+            String previousName = entry != null ? (String) loadedValue(entry, "name") : null;
+            publisher.publishEvent(new TeamChangedEvent(type, team.getId(), team.getName(), previousName));
+        }
+    }
+
+    //flush 중인 세션이 스프링 트랜잭션의 세션이 아니면 (별도로 만든 EntityManager 등) 변경 전 값은 알 수 없다.
+    private EntityEntry entityEntry(Object entity) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+        EntityEntry entry = em.unwrap(SessionImplementor.class).getPersistenceContext().getEntry(entity);
+        return entry != null && entry.getLoadedState() != null ? entry : null;
+    }
+
+    private Object loadedValue(EntityEntry entry, String property) {
+        int index = entry.getPersister().getEntityMetamodel().getPropertyIndex(property);
+        return entry.getLoadedState()[index];
+    }
+
+    //지연 로딩 프록시를 초기화하지 않고 식별자만 꺼낸다.
+    private Long teamId(Team team) {
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team.getId();
+    }
+
+    private String teamName(Team team) {
+        return team != null && Hibernate.isInitialized(team) ? team.getName() : null;
+    }
+}
@@ -0,0 +1,20 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Team 엔티티가 flush 될 때 발행되는 이벤트.
+ * previousName 은 UPDATE 일 때만 있다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class TeamChangedEvent {
+
+    private final EntityChangeType type;
+    private final Long teamId;
+    private final String name;
+    private final String previousName;
+}
@@ -0,0 +1,84 @@
+package study.querydsl.monitor;
+
+import org.hibernate.stat.Statistics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 리포지토리 메서드 하나에 누적된 호출 수, 시간, 하이버네이트 통계 증가량.
+ */
+public class MethodStats {
+
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder queryExecutions = new LongAdder();
+    private final LongAdder queryPlanCacheHits = new LongAdder();
+    private final LongAdder queryPlanCacheMisses = new LongAdder();
+    private final LongAdder entityLoads = new LongAdder();
+    private final LongAdder entityFetches = new LongAdder();
+    private final LongAdder collectionLoads = new LongAdder();
+    private final LongAdder collectionFetches = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder preparedStatements = new LongAdder();
+
+    void record(Snapshot before, Snapshot after, long elapsedNanos) {
+        invocations.increment();
+        totalNanos.add(elapsedNanos);
+        queryExecutions.add(after.queryExecutions - before.queryExecutions);
+        queryPlanCacheHits.add(after.queryPlanCacheHits - before.queryPlanCacheHits);
+        queryPlanCacheMisses.add(after.queryPlanCacheMisses - before.queryPlanCacheMisses);
+        entityLoads.add(after.entityLoads - before.entityLoads);
+        entityFetches.add(after.entityFetches - before.entityFetches);
+        collectionLoads.add(after.collectionLoads - before.collectionLoads);
+        collectionFetches.add(after.collectionFetches - before.collectionFetches);
+        flushes.add(after.flushes - before.flushes);
+        preparedStatements.add(after.preparedStatements - before.preparedStatements);
+    }
+
+    public Map<String, Object> toMap() {
+        long count = invocations.sum();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("invocations", count);
+        map.put("totalMillis", totalNanos.sum() / 1_000_000);
+        map.put("averageMillis", count == 0 ? 0 : totalNanos.sum() / count / 1_000_000.0);
+        map.put("queryExecutions", queryExecutions.sum());
+        map.put("queryPlanCacheHits", queryPlanCacheHits.sum());
+        map.put("queryPlanCacheMisses", queryPlanCacheMisses.sum());
+        map.put("entityLoads", entityLoads.sum());
+        map.put("entityFetches", entityFetches.sum());
+        map.put("collectionLoads", collectionLoads.sum());
+        map.put("collectionFetches", collectionFetches.sum());
+        map.put("flushes", flushes.sum());
+        map.put("preparedStatements", preparedStatements.sum());
+        return map;
+    }
+
+    /**
+     * 하이버네이트 통계는 SessionFactory 전체의 누적값이므로 메서드 전후 값의 차이로 계산한다.
+     */
+    static class Snapshot {
+        private final long queryExecutions;
+        private final long queryPlanCacheHits;
+        private final long queryPlanCacheMisses;
+        private final long entityLoads;
+        private final long entityFetches;
+        private final long collectionLoads;
+        private final long collectionFetches;
+        private final long flushes;
+        private final long preparedStatements;
+
+        Snapshot(Statistics statistics) {
+            this.queryExecutions = statistics.getQueryExecutionCount();
+            this.queryPlanCacheHits = statistics.getQueryPlanCacheHitCount();
+            this.queryPlanCacheMisses = statistics.getQueryPlanCacheMissCount();
+            this.entityLoads = statistics.getEntityLoadCount();
+            this.entityFetches = statistics.getEntityFetchCount();
+            this.collectionLoads = statistics.getCollectionLoadCount();
+            this.collectionFetches = statistics.getCollectionFetchCount();
+            this.flushes = statistics.getFlushCount();
+            this.preparedStatements = statistics.getPrepareStatementCount();
+        }
+    }
+}
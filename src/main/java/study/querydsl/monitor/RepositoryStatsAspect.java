@@ -0,0 +1,74 @@
+package study.querydsl.monitor;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * MemberJpaRepository, MemberRepositoryImpl 의 public 메서드마다 하이버네이트 통계 증가량을 모은다.
+ *
+ * 통계는 SessionFactory 전체 값이므로 동시에 실행 중인 다른 요청의 수치가 섞일 수 있다. 대략적인 비중을 보는 용도이다.
+ * 리포지토리 메서드가 다른 리포지토리 메서드를 호출하면 바깥 메서드에만 기록한다.
+ */
+@Aspect
+@Component
+@Profile("stats")
+public class RepositoryStatsAspect {
+
+    private static final ThreadLocal<String> CURRENT_METHOD = new ThreadLocal<>();
+
+    private final Statistics statistics;
+    private final ConcurrentMap<String, MethodStats> stats = new ConcurrentHashMap<>();
+
+    public RepositoryStatsAspect(EntityManagerFactory emf) {
+        this.statistics = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * 현재 스레드에서 실행 중인 리포지토리 메서드 이름. 느린 쿼리를 메서드와 연결할 때 사용한다.
+     */
+    public static String currentMethod() {
+        return CURRENT_METHOD.get();
+    }
+
+    @Around("execution(public * study.querydsl.repository.MemberJpaRepository.*(..))"
+            + " || execution(public * study.querydsl.repository.MemberRepositoryImpl.*(..))")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (CURRENT_METHOD.get() != null) {
+            return joinPoint.proceed();
+        }
+
+        String method = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        CURRENT_METHOD.set(method);
+        MethodStats.Snapshot before = new MethodStats.Snapshot(statistics);
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            stats.computeIfAbsent(method, m -> new MethodStats())
+                    .record(before, new MethodStats.Snapshot(statistics), elapsed);
+            CURRENT_METHOD.remove();
+        }
+    }
+
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        stats.forEach((method, methodStats) -> result.put(method, methodStats.toMap()));
+        return result;
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+}
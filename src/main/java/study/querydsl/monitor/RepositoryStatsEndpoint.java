@@ -0,0 +1,42 @@
+package study.querydsl.monitor;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * GET /actuator/repositorystats : 메서드별 통계와 최근 느린 쿼리
+ * DELETE /actuator/repositorystats : 초기화
+ */
+@Component
+@Profile("stats")
+@Endpoint(id = "repositorystats")
+public class RepositoryStatsEndpoint {
+
+    private final RepositoryStatsAspect repositoryStatsAspect;
+    private final SlowQueryLog slowQueryLog;
+
+    public RepositoryStatsEndpoint(RepositoryStatsAspect repositoryStatsAspect, SlowQueryLog slowQueryLog) {
+        this.repositoryStatsAspect = repositoryStatsAspect;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("methods", repositoryStatsAspect.snapshot());
+        result.put("slowQueries", slowQueryLog.slowest());
+        return result;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        repositoryStatsAspect.reset();
+        slowQueryLog.clear();
+    }
+}
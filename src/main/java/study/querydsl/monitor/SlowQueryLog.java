@@ -0,0 +1,80 @@
+package study.querydsl.monitor;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * threshold 이상 걸린 SQL 을 바인딩 값과 함께 고정 크기 링 버퍼에 남긴다. 버퍼가 차면 가장 오래된 것부터 덮어쓴다.
+ * p6spy 스타터가 JdbcEventListener 빈을 데이터소스에 등록해준다.
+ */
+@Component
+@Profile("stats")
+public class SlowQueryLog extends JdbcEventListener {
+
+    private final long thresholdNanos;
+    private final AtomicReferenceArray<SlowQuery> buffer;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public SlowQueryLog(@Value("${app.stats.slow-query-threshold-millis:100}") long thresholdMillis,
+                        @Value("${app.stats.slow-query-capacity:100}") int capacity) {
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (timeElapsedNanos < thresholdNanos) {
+            return;
+        }
+        long index = sequence.getAndIncrement();
+        buffer.set((int) (index % buffer.length()), new SlowQuery(RepositoryStatsAspect.currentMethod(),
+                statementInformation.getSqlWithValues(), timeElapsedNanos / 1_000_000, System.currentTimeMillis()));
+    }
+
+    /**
+     * 버퍼에 남아있는 쿼리를 느린 순서로 반환한다.
+     */
+    public List<SlowQuery> slowest() {
+        List<SlowQuery> queries = new ArrayList<>();
+        for (int i = 0; i < buffer.length(); i++) {
+            SlowQuery query = buffer.get(i);
+            if (query != null) {
+                queries.add(query);
+            }
+        }
+        queries.sort(Comparator.comparingLong(SlowQuery::getElapsedMillis).reversed());
+        return queries;
+    }
+
+    public void clear() {
+        for (int i = 0; i < buffer.length(); i++) {
+            buffer.set(i, null);
+        }
+    }
+
+    @Getter
+    public static class SlowQuery {
+        private final String method;
+        private final String sql;
+        private final long elapsedMillis;
+        private final long executedAt;
+
+        SlowQuery(String method, String sql, long elapsedMillis, long executedAt) {
+            this.method = method;
+            this.sql = sql;
+            this.elapsedMillis = elapsedMillis;
+            this.executedAt = executedAt;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package study.querydsl.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
+import study.querydsl.dto.MemberTeamDto;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * MemberJpaRepositoryCustom 조회를 전용 스레드 풀에서 실행하고 CompletableFuture 로 돌려준다.
+ * 웹 요청 스레드는 쿼리를 기다리지 않고 바로 반환된다. (컨트롤러에서 CompletableFuture 를 그대로 반환)
+ *
+ * 스레드 수와 대기열 크기는 제한되어 있고, 대기열이 차면 기다리지 않고 RejectedExecutionException 으로 실패한
+ * future 를 돌려준다. 호출하는 쪽은 이를 보고 요청을 거절(503)하면 된다.
+ * 스레드 수는 커넥션 풀 크기보다 작게 잡아야 한다.
+ *
+ * 트랜잭션은 스레드를 넘어갈 수 없으므로 작업마다 작업 스레드에서 읽기 전용 트랜잭션을 새로 연다.
+ * 호출한 쪽이 읽기/쓰기 트랜잭션 안이면 아직 커밋되지 않은 변경을 봐야 하므로 그 스레드에서 바로 실행한다.
+ */
+@Component
+public class AsyncMemberSearch {
+
+    private final MemberRepository memberRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor executor;
+    private final TaskDecorator taskDecorator = new ContextPropagatingTaskDecorator();
+
+    public AsyncMemberSearch(MemberRepository memberRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.member.async.pool-size:8}") int poolSize,
+                             @Value("${app.member.async.queue-capacity:100}") int queueCapacity) {
+        this.memberRepository = memberRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "member-query-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public CompletableFuture<List<MemberTeamDto>> search(MemberSearchCondition condition) {
+        MemberSearchCondition snapshot = condition.copy();
+        return submit(() -> memberRepository.search(snapshot));
+    }
+
+    public CompletableFuture<Page<MemberTeamDto>> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchCondition snapshot = condition.copy();
+        return submit(() -> memberRepository.searchPageSimple(snapshot, pageable));
+    }
+
+    public CompletableFuture<Page<MemberTeamDto>> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchCondition snapshot = condition.copy();
+        return submit(() -> memberRepository.searchPageComplex(snapshot, pageable));
+    }
+
+    public CompletableFuture<List<List<MemberTeamDto>>> searchBatch(List<MemberSearchCondition> conditions) {
+        List<MemberSearchCondition> snapshot = new ArrayList<>(conditions.size());
+        for (MemberSearchCondition condition : conditions) {
+            snapshot.add(condition.copy());
+        }
+        return submit(() -> memberRepository.searchBatch(snapshot));
+    }
+
+    public CompletableFuture<MemberTeamColumns> searchColumns(MemberSearchCondition condition) {
+        MemberSearchCondition snapshot = condition.copy();
+        return submit(() -> memberRepository.searchColumns(snapshot));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> query) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            run(future, query);
+            return future;
+        }
+
+        try {
+            executor.execute(taskDecorator.decorate(
+                    () -> run(future, () -> readOnlyTransaction.execute(status -> query.get()))));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static <T> void run(CompletableFuture<T> future, Supplier<T> query) {
+        try {
+            future.complete(query.get());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+}
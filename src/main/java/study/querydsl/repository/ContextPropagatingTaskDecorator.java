@@ -0,0 +1,41 @@
+package study.querydsl.repository;
+
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Map;
+
+/**
+ * 작업을 제출한 스레드의 MDC 와 요청 정보(RequestContextHolder)를 작업 스레드로 넘긴다.
+ * 작업이 끝나면 작업 스레드에 원래 있던 값으로 되돌린다.
+ */
+class ContextPropagatingTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+
+        return () -> {
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            RequestAttributes previousAttributes = RequestContextHolder.getRequestAttributes();
+            set(mdc, requestAttributes);
+            try {
+                runnable.run();
+            } finally {
+                set(previousMdc, previousAttributes);
+            }
+        };
+    }
+
+    private static void set(Map<String, String> mdc, RequestAttributes requestAttributes) {
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        } else {
+            MDC.clear();
+        }
+        RequestContextHolder.setRequestAttributes(requestAttributes);
+    }
+}
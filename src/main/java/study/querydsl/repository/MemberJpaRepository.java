@@ -4,40 +4,63 @@ import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkStatementCapture;
+import study.querydsl.event.EntityChangeType;
+import study.querydsl.event.MemberBulkChangedEvent;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.*;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.UsernameConditions.usernameMatches;
 
 @Repository
 
 public class MemberJpaRepository {
 
+    private static final int IN_CHUNK_SIZE = 1000;
+
     private final EntityManager em;
     private final JPAQueryFactory jpaQueryFactory;
+    private final ApplicationEventPublisher publisher;
 
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, ApplicationEventPublisher publisher) {
         this.em = em;
         this.jpaQueryFactory = new JPAQueryFactory(em);
+        this.publisher = publisher;
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll_queryDsl(){
         return jpaQueryFactory
                 .selectFrom(member)
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUserName_queryDsl(String username){
         return jpaQueryFactory
                 .selectFrom(member)
@@ -45,12 +68,13 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition){
 
         BooleanBuilder booleanBuilder = new BooleanBuilder();
 
         if (hasText(condition.getUsername())) {
-            booleanBuilder.and(member.username.eq(condition.getUsername()));
+            booleanBuilder.and(usernameMatches(condition.getUsername(), condition.getUsernameMatch()));
         }
 
         if (hasText(condition.getTeamName())) {
@@ -77,6 +101,7 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition conditioin) {
         return jpaQueryFactory
                 .select(new QMemberTeamDto(member.id.as("memberId"),
@@ -87,7 +112,7 @@ public class MemberJpaRepository {
                 ))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(conditioin.getUsername()),
+                .where(usernameMatches(conditioin.getUsername(), conditioin.getUsernameMatch()),
                         teamnameEq(conditioin.getTeamName()),
                         ageGoe(conditioin.getAgeGoe()),
                         ageLoe(conditioin.getAgeLoe()))
@@ -96,6 +121,131 @@ public class MemberJpaRepository {
 
     }
 
+    /*
+     * 벌크 연산은 영속성 컨텍스트와 엔티티 리스너를 거치지 않는다.
+     * 실행 전에 flush 해서 쌓인 변경을 먼저 반영하고, 실행 후에는 clear 해서 DB 값을 다시 읽게 한다.
+     * 캐시 등이 따라올 수 있도록 영향을 받은 나이 범위와 id 범위를 MemberBulkChangedEvent 로 알린다.
+     * 직접 실행한 벌크 JPQL 은 BulkStatementCapture 가 범위 없이 알리므로, 여기서는 reported 로 감싸서 한 번만 발행한다.
+     *
+     * 조건으로 바로 update/delete 하면 범위를 구한 뒤 커밋된 회원도 바뀌어서 알린 id 범위를 벗어날 수 있다.
+     * 그래서 조건에 맞는 회원을 먼저 잠그고(select ... for update) 그 id 만 바꾼다. 잠근 뒤에 들어온 회원은 바뀌지 않는다.
+     * 대상 id 를 모두 읽으므로 아주 많은 회원을 한 번에 바꿀 때는 나눠서 호출한다.
+     */
+
+    public long bulkUpdateUsername(String username, int ageLt) {
+        em.flush();
+        List<Long> ids = lockIds(member.age.lt(ageLt));
+        long count = inChunks(ids, chunk -> jpaQueryFactory
+                .update(member)
+                .set(member.username, username)
+                .where(member.id.in(chunk))
+                .execute());
+        em.clear();
+
+        publisher.publishEvent(new MemberBulkChangedEvent(EntityChangeType.UPDATE, null, ageLt - 1, minId(ids), maxId(ids)));
+        return count;
+    }
+
+    public long bulkAddAge(int amount) {
+        em.flush();
+        List<Long> ids = lockIds(null);
+        long count = inChunks(ids, chunk -> jpaQueryFactory
+                .update(member)
+                .set(member.age, member.age.add(amount))
+                .where(member.id.in(chunk))
+                .execute());
+        em.clear();
+
+        publisher.publishEvent(new MemberBulkChangedEvent(EntityChangeType.UPDATE, null, null, minId(ids), maxId(ids)));
+        return count;
+    }
+
+    public long bulkDeleteByAgeGt(int age) {
+        em.flush();
+        List<Long> ids = lockIds(member.age.gt(age));
+        long count = inChunks(ids, chunk -> jpaQueryFactory
+                .delete(member)
+                .where(member.id.in(chunk))
+                .execute());
+        em.clear();
+
+        publisher.publishEvent(new MemberBulkChangedEvent(EntityChangeType.DELETE, age + 1, null, minId(ids), maxId(ids)));
+        return count;
+    }
+
+    /**
+     * 회원들의 팀을 한 번에 바꾼다. Team.memberList 는 초기화하지 않고 team_id 만 update 한다.
+     * 벌크 update 이므로 버전도 직접 올리고, 영속성 컨텍스트에 이미 있는 회원만 다시 읽어서 맞춘다.
+     */
+    public long moveMembersToTeam(List<Long> memberIds, Long teamId) {
+        em.flush();
+        Team target = em.getReference(Team.class, teamId);
+
+        long count = inChunks(memberIds, chunk -> jpaQueryFactory
+                .update(member)
+                .set(member.team, target)
+                .set(member.version, member.version.add(1))
+                .where(member.id.in(chunk))
+                .execute());
+        refreshLoadedMembers(memberIds, target);
+
+        publisher.publishEvent(new MemberBulkChangedEvent(EntityChangeType.UPDATE, null, null,
+                minId(memberIds), maxId(memberIds)));
+        return count;
+    }
+
+    //where 에 걸리는 회원을 커밋할 때까지 잠그고 id 를 읽는다.
+    private List<Long> lockIds(Predicate where) {
+        return jpaQueryFactory
+                .select(member.id)
+                .from(member)
+                .where(where)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .fetch();
+    }
+
+    //IN 목록이 너무 길어지지 않도록 나눠서 실행한다.
+    private long inChunks(List<Long> ids, Function<List<Long>, Long> statement) {
+        long count = 0;
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+            count += BulkStatementCapture.reported(() -> statement.apply(chunk));
+        }
+        return count;
+    }
+
+    private static Long minId(List<Long> ids) {
+        return ids.isEmpty() ? null : Collections.min(ids);
+    }
+
+    private static Long maxId(List<Long> ids) {
+        return ids.isEmpty() ? null : Collections.max(ids);
+    }
+
+    private void refreshLoadedMembers(List<Long> memberIds, Team target) {
+        PersistenceContext persistenceContext = em.unwrap(SessionImplementor.class).getPersistenceContext();
+        if (persistenceContext.getNumberOfManagedEntities() == 0) {
+            return;
+        }
+
+        Set<Long> ids = new HashSet<>(memberIds);
+        for (Map.Entry<Object, EntityEntry> entry : persistenceContext.reentrantSafeEntityEntries()) {
+            if (!(entry.getKey() instanceof Member) || !ids.contains(((Member) entry.getKey()).getId())) {
+                continue;
+            }
+            Member loaded = (Member) entry.getKey();
+            Team previous = loaded.getTeam();
+            if (previous != null && Hibernate.isInitialized(previous) && Hibernate.isInitialized(previous.getMemberList())) {
+                previous.getMemberList().remove(loaded);
+            }
+            em.refresh(loaded);
+            if (Hibernate.isInitialized(target) && Hibernate.isInitialized(target.getMemberList())
+                    && !target.getMemberList().contains(loaded)) {
+                target.getMemberList().add(loaded);
+            }
+        }
+    }
+
     private BooleanExpression ageLoe(Integer ageLoe) {
         return ageLoe != null ? member.age.loe(ageLoe) : null;
     }
@@ -108,8 +258,4 @@ public class MemberJpaRepository {
         return hasText(teamName) ? team.name.eq(teamName) : null;
 
     }
-
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
-    }
 }
@@ -3,7 +3,10 @@ package study.querydsl.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TeamAggregateHaving;
+import study.querydsl.dto.TeamAggregates;
 import study.querydsl.entity.Member;
 
 import java.util.List;
@@ -13,4 +16,21 @@ public interface MemberJpaRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * 여러 검색 조건을 한 번의 쿼리로 조회한다.
+     * 반환 리스트의 i 번째 결과는 conditions 의 i 번째 조건에 대한 search 결과와 같다.
+     */
+    List<List<MemberTeamDto>> searchBatch(List<MemberSearchCondition> conditions);
+
+    /**
+     * search 와 같은 결과를 행마다 DTO 를 만들지 않고 열 단위로 담아서 반환한다. 결과가 아주 클 때 사용한다.
+     */
+    MemberTeamColumns searchColumns(MemberSearchCondition condition);
+
+    /**
+     * 조건에 맞는 회원을 팀별로 집계한다. 팀이 없는 회원은 포함하지 않는다.
+     * having 이 null 이면 모든 팀을 반환한다.
+     */
+    TeamAggregates aggregateByTeam(MemberSearchCondition condition, TeamAggregateHaving having);
 }
@@ -0,0 +1,136 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * Pageable 의 Sort 를 member / team 경로의 OrderSpecifier 로 바꾼다.
+ * 정해진 속성(MemberTeamDto 의 필드 이름)만 허용해서 요청 값으로 임의의 경로를 정렬하지 못하게 한다.
+ *
+ * 정렬이 없거나 member.id 가 빠져 있으면 마지막에 member.id 를 붙여서 페이지 사이에 순서가 흔들리지 않게 한다.
+ * 방향은 마지막 정렬과 맞춰서 (age, member_id) 같은 인덱스를 한 방향으로 읽을 수 있게 한다.
+ */
+@Slf4j
+final class MemberOrderSpecifiers {
+
+    private static final Map<String, SortPath> PATHS = new HashMap<>();
+
+    static {
+        PATHS.put("memberId", new SortPath(member.id, MemberTeamDto::getMemberId, true));
+        PATHS.put("username", new SortPath(member.username, MemberTeamDto::getUsername, true));   //idx_member_username
+        PATHS.put("age", new SortPath(member.age, MemberTeamDto::getAge, true));                  //idx_member_age_id
+        PATHS.put("teamId", new SortPath(member.team.id, MemberTeamDto::getTeamId, true));        //team_id 외래 키 인덱스
+        PATHS.put("teamName", new SortPath(team.name, MemberTeamDto::getTeamName, false));
+    }
+
+    //같은 경고를 요청마다 남기지 않는다.
+    private static final Set<String> WARNED = ConcurrentHashMap.newKeySet();
+
+    private MemberOrderSpecifiers() {
+    }
+
+    static OrderSpecifier<?>[] orderBy(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        boolean hasId = false;
+        boolean ascending = true;
+
+        for (Sort.Order order : sort) {
+            SortPath path = path(order);
+            if (!path.indexed && WARNED.add(order.getProperty())) {
+                log.warn("{} 정렬은 인덱스가 없어 정렬 전에 조건에 맞는 행을 모두 읽습니다.", order.getProperty());
+            }
+
+            ascending = order.isAscending();
+            OrderSpecifier<?> specifier = ascending ? path.expression.asc() : path.expression.desc();
+            if (order.getNullHandling() == Sort.NullHandling.NULLS_FIRST) {
+                specifier = specifier.nullsFirst();
+            } else if (order.getNullHandling() == Sort.NullHandling.NULLS_LAST) {
+                specifier = specifier.nullsLast();
+            }
+            orders.add(specifier);
+            hasId |= path.expression == member.id;
+        }
+
+        if (!hasId) {
+            orders.add(ascending ? member.id.asc() : member.id.desc());
+        }
+        return orders.toArray(new OrderSpecifier[0]);
+    }
+
+    /**
+     * orderBy 와 같은 순서로 MemberTeamDto 를 비교한다. 여러 곳에서 정렬해서 가져온 결과를 합칠 때 쓴다.
+     * null 은 DB(H2) 기본값처럼 오름차순이면 앞, 내림차순이면 뒤에 둔다.
+     */
+    static Comparator<MemberTeamDto> comparator(Sort sort) {
+        Comparator<MemberTeamDto> comparator = null;
+        boolean hasId = false;
+        boolean ascending = true;
+
+        for (Sort.Order order : sort) {
+            SortPath path = path(order);
+            ascending = order.isAscending();
+            Comparator<Comparable<Object>> values = order.getNullHandling() == Sort.NullHandling.NULLS_LAST
+                    ? Comparator.nullsLast(Comparator.naturalOrder())
+                    : Comparator.nullsFirst(Comparator.naturalOrder());
+            if (!ascending) {
+                values = order.getNullHandling() == Sort.NullHandling.NATIVE
+                        ? values.reversed()
+                        : reverseValues(values);
+            }
+            Comparator<MemberTeamDto> next = Comparator.comparing(path.value, values);
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+            hasId |= path.expression == member.id;
+        }
+
+        if (!hasId) {
+            Comparator<MemberTeamDto> byId = Comparator.comparing(MemberTeamDto::getMemberId);
+            byId = ascending ? byId : byId.reversed();
+            comparator = comparator == null ? byId : comparator.thenComparing(byId);
+        }
+        return comparator;
+    }
+
+    //NULLS_FIRST / NULLS_LAST 를 지정했으면 내림차순에서도 null 위치는 그대로 둔다.
+    private static Comparator<Comparable<Object>> reverseValues(Comparator<Comparable<Object>> values) {
+        return (a, b) -> a == null || b == null ? values.compare(a, b) : values.compare(b, a);
+    }
+
+    private static SortPath path(Sort.Order order) {
+        SortPath path = PATHS.get(order.getProperty());
+        if (path == null) {
+            throw new IllegalArgumentException("정렬할 수 없는 속성입니다: " + order.getProperty()
+                    + " (가능한 속성: " + PATHS.keySet() + ")");
+        }
+        return path;
+    }
+
+    private static class SortPath {
+
+        private final ComparableExpressionBase<?> expression;
+        private final Function<MemberTeamDto, Comparable<Object>> value;
+        private final boolean indexed;
+
+        @SuppressWarnings("unchecked")
+        SortPath(ComparableExpressionBase<?> expression, Function<MemberTeamDto, ? extends Comparable<?>> value,
+                 boolean indexed) {
+            this.expression = expression;
+            this.value = (Function<MemberTeamDto, Comparable<Object>>) (Function<MemberTeamDto, ?>) value;
+            this.indexed = indexed;
+        }
+    }
+}
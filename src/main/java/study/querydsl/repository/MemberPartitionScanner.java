@@ -0,0 +1,178 @@
+package study.querydsl.repository;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.UsernameConditions.usernameMatches;
+
+/**
+ * 전체 회원을 훑는 집계를 member_id 범위로 나눠서 병렬로 실행한다.
+ *
+ * 파티션마다 별도의 EntityManager (= 별도의 커넥션)와 읽기 전용 트랜잭션을 사용하고,
+ * 행을 리스트로 모으지 않고 읽는 대로 collector 의 accumulator 에 넘긴다.
+ * 파티션 결과는 combiner 로 합치므로 collector 는 병렬 스트림에 쓸 수 있는 것이면 된다.
+ *
+ * 동시에 실행되는 파티션 수는 parallelism 으로 제한되므로 커넥션 풀 크기보다 작게 잡아야 한다.
+ */
+@Component
+public class MemberPartitionScanner {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final EntityManagerFactory emf;
+    private final ExecutorService executor;
+
+    public MemberPartitionScanner(EntityManagerFactory emf,
+                                  @Value("${app.member.scan.parallelism:4}") int parallelism) {
+        this.emf = emf;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "member-scan-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public <A, R> R scan(MemberSearchCondition condition, int partitions,
+                         Collector<? super MemberTeamDto, A, R> collector) {
+        Assert.isTrue(partitions > 0, "partitions 는 1 이상이어야 합니다.");
+
+        long[] bounds = inReadOnlyEntityManager(em -> idBounds(em, condition));
+        if (bounds == null) {
+            return collector.finisher().apply(collector.supplier().get());
+        }
+
+        long min = bounds[0];
+        long max = bounds[1];
+        long width = (max - min) / partitions + 1;
+
+        List<CompletableFuture<A>> futures = new ArrayList<>();
+        for (long start = min; start <= max; start += width) {
+            long from = start;
+            long to = Math.min(start + width - 1, max);
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> inReadOnlyEntityManager(em -> scanPartition(em, condition, from, to, collector)), executor));
+        }
+
+        A result = null;
+        for (CompletableFuture<A> future : futures) {
+            A partition = join(future);
+            result = result == null ? partition : collector.combiner().apply(result, partition);
+        }
+        return collector.finisher().apply(result);
+    }
+
+    private long[] idBounds(EntityManager em, MemberSearchCondition condition) {
+        Tuple bounds = new JPAQueryFactory(em)
+                .select(member.id.min(), member.id.max())
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameMatches(condition.getUsername(), condition.getUsernameMatch()),
+                        teamnameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .fetchOne();
+
+        if (bounds == null || bounds.get(0, Long.class) == null) {
+            return null;
+        }
+        return new long[]{bounds.get(0, Long.class), bounds.get(1, Long.class)};
+    }
+
+    private <A> A scanPartition(EntityManager em, MemberSearchCondition condition, long from, long to,
+                                Collector<? super MemberTeamDto, A, ?> collector) {
+        A container = collector.supplier().get();
+        try (CloseableIterator<MemberTeamDto> rows = new JPAQueryFactory(em)
+                .select(new QMemberTeamDto(member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        member.id.between(from, to),
+                        usernameMatches(condition.getUsername(), condition.getUsernameMatch()),
+                        teamnameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .iterate()) {
+            while (rows.hasNext()) {
+                collector.accumulator().accept(container, rows.next());
+            }
+        }
+        return container;
+    }
+
+    private <T> T inReadOnlyEntityManager(Function<EntityManager, T> work) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            try {
+                return work.apply(em);
+            } finally {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    private <A> A join(CompletableFuture<A> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private BooleanExpression teamnameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+}
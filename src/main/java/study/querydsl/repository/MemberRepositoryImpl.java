@@ -1,19 +1,35 @@
 package study.querydsl.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.ExpressionUtils;
 import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.TeamAggregateHaving;
+import study.querydsl.dto.TeamAggregates;
+import study.querydsl.dto.UsernameMatch;
 import study.querydsl.entity.Member;
 
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import static org.springframework.util.StringUtils.hasText;
@@ -22,13 +38,18 @@ import static study.querydsl.entity.QTeam.team;
 
 public class MemberRepositoryImpl implements MemberJpaRepositoryCustom{
 
+    private final EntityManager em;
     private final JPAQueryFactory jpaQueryFactory;
+    private final ObjectProvider<MemberUsernameIndex> usernameIndex;
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em, ObjectProvider<MemberUsernameIndex> usernameIndex) {
+        this.em = em;
         this.jpaQueryFactory = new JPAQueryFactory(em);
+        this.usernameIndex = usernameIndex;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
         return jpaQueryFactory
                 .select(new QMemberTeamDto(member.id.as("memberId"),
@@ -39,7 +60,7 @@ public class MemberRepositoryImpl implements MemberJpaRepositoryCustom{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameCond(condition),
                         teamnameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -48,6 +69,7 @@ public class MemberRepositoryImpl implements MemberJpaRepositoryCustom{
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
         QueryResults<MemberTeamDto> content = jpaQueryFactory
                 .select(new QMemberTeamDto(member.id.as("memberId"),
@@ -58,11 +80,12 @@ public class MemberRepositoryImpl implements MemberJpaRepositoryCustom{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameCond(condition),
                         teamnameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
+                .orderBy(MemberOrderSpecifiers.orderBy(pageable.getSort()))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetchResults();
@@ -71,6 +94,7 @@ public class MemberRepositoryImpl implements MemberJpaRepositoryCustom{
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
         List<MemberTeamDto> contents = jpaQueryFactory
                 .select(new QMemberTeamDto(member.id.as("memberId"),
@@ -81,11 +105,12 @@ public class MemberRepositoryImpl implements MemberJpaRepositoryCustom{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameCond(condition),
                         teamnameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
+                .orderBy(MemberOrderSpecifiers.orderBy(pageable.getSort()))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetch();
@@ -95,7 +120,7 @@ public class MemberRepositoryImpl implements MemberJpaRepositoryCustom{
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameCond(condition),
                         teamnameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
@@ -105,6 +130,141 @@ public class MemberRepositoryImpl implements MemberJpaRepositoryCustom{
         return PageableExecutionUtils.getPage(contents, pageable, jpaMember::fetchCount);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<List<MemberTeamDto>> searchBatch(List<MemberSearchCondition> conditions) {
+        if (conditions.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        //조건마다 쿼리를 날리지 않고 OR 로 묶어서 한 번에 조회한 뒤 조건별로 다시 나눈다.
+        List<MemberTeamDto> rows = jpaQueryFactory
+                .select(new QMemberTeamDto(member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(anyCondition(conditions))
+                .fetch();
+
+        List<List<MemberTeamDto>> results = new ArrayList<>(conditions.size());
+        for (MemberSearchCondition condition : conditions) {
+            List<MemberTeamDto> matched = new ArrayList<>();
+            for (MemberTeamDto row : rows) {
+                if (matches(condition, row)) {
+                    matched.add(row);
+                }
+            }
+            results.add(matched);
+        }
+        return results;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MemberTeamColumns searchColumns(MemberSearchCondition condition) {
+        MemberTeamColumns columns = new MemberTeamColumns();
+
+        //iterate 는 결과를 한 번에 리스트로 만들지 않고 JDBC ResultSet 을 따라가며 읽는다.
+        try (CloseableIterator<Tuple> rows = jpaQueryFactory
+                .select(member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameCond(condition),
+                        teamnameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .setHint(QueryHints.HINT_FETCH_SIZE, 1000)
+                .iterate()) {
+            while (rows.hasNext()) {
+                Tuple row = rows.next();
+                columns.add(row.get(0, Long.class),
+                        row.get(1, String.class),
+                        row.get(2, Integer.class),
+                        row.get(3, Long.class),
+                        row.get(4, String.class));
+            }
+        }
+
+        columns.trimToSize();
+        return columns;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TeamAggregates aggregateByTeam(MemberSearchCondition condition, TeamAggregateHaving having) {
+        TeamAggregates aggregates = new TeamAggregates();
+        //row 는 프로젝션이 aggregates 에 바로 쓴다. (row 마다 Tuple 을 만들지 않는다)
+        jpaQueryFactory
+                .select(new TeamAggregatesProjection(aggregates, team.id, team.name, member.count(),
+                        member.age.sum(), member.age.min(), member.age.max(), member.age.avg()))
+                .from(member)
+                .join(member.team, team)
+                .where(
+                        usernameCond(condition),
+                        teamnameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .groupBy(team.id, team.name)
+                .having(havingCond(having))
+                .orderBy(team.id.asc())
+                .fetch();
+        return aggregates;
+    }
+
+    private Predicate anyCondition(List<MemberSearchCondition> conditions) {
+        List<Predicate> predicates = new ArrayList<>(conditions.size());
+        for (MemberSearchCondition condition : conditions) {
+            Predicate predicate = ExpressionUtils.allOf(
+                    usernameCond(condition),
+                    teamnameEq(condition.getTeamName()),
+                    ageGoe(condition.getAgeGoe()),
+                    ageLoe(condition.getAgeLoe()));
+            //조건이 비어있는 검색이 하나라도 있으면 전체를 조회해야 한다.
+            if (predicate == null) {
+                return null;
+            }
+            predicates.add(predicate);
+        }
+        return ExpressionUtils.anyOf(predicates);
+    }
+
+    /**
+     * usernameCond, teamnameEq, ageGoe, ageLoe 와 같은 규칙으로 조회된 row 가 조건에 맞는지 확인한다.
+     */
+    private boolean matches(MemberSearchCondition condition, MemberTeamDto row) {
+        if (!UsernameConditions.matches(row.getUsername(), condition.getUsername(), condition.getUsernameMatch())) {
+            return false;
+        }
+        if (hasText(condition.getTeamName()) && !condition.getTeamName().equals(row.getTeamName())) {
+            return false;
+        }
+        if (condition.getAgeGoe() != null && row.getAge() < condition.getAgeGoe()) {
+            return false;
+        }
+        return condition.getAgeLoe() == null || row.getAge() <= condition.getAgeLoe();
+    }
+
+    private Predicate havingCond(TeamAggregateHaving having) {
+        if (having == null) {
+            return null;
+        }
+        return ExpressionUtils.allOf(
+                having.getCountGoe() != null ? member.count().goe(having.getCountGoe()) : null,
+                having.getCountLoe() != null ? member.count().loe(having.getCountLoe()) : null,
+                having.getAgeAvgGoe() != null ? member.age.avg().goe(having.getAgeAvgGoe()) : null,
+                having.getAgeAvgLoe() != null ? member.age.avg().loe(having.getAgeAvgLoe()) : null);
+    }
+
     private Predicate ageLoe(Integer ageLoe) {
         return ageLoe != null ? member.age.loe(ageLoe) : null;
     }
@@ -117,8 +277,27 @@ public class MemberRepositoryImpl implements MemberJpaRepositoryCustom{
         return hasText(teamName) ? team.name.eq(teamName) : null;
     }
 
-    private Predicate usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    /**
+     * CONTAINS 는 trigram 색인으로 후보 id 를 먼저 줄이고 like 로 확인한다.
+     * 색인이 꺼져 있거나(app.member.username-index.enabled, 기본값) 준비되지 않았거나
+     * 검색어가 짧거나 후보가 너무 많으면 like 만 사용한다.
+     */
+    private Predicate usernameCond(MemberSearchCondition condition) {
+        String username = condition.getUsername();
+        BooleanExpression matches = UsernameConditions.usernameMatches(username, condition.getUsernameMatch());
+        MemberUsernameIndex index = usernameIndex.getIfAvailable();
+        if (matches == null || index == null
+                || UsernameConditions.matchOf(condition.getUsernameMatch()) != UsernameMatch.CONTAINS) {
+            return matches;
+        }
+        //색인은 flush 때 갱신되므로 쿼리 실행 시점의 자동 flush 보다 먼저 반영해둔다.
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && em.getFlushMode() == FlushModeType.AUTO) {
+            em.flush();
+        }
+        Collection<Long> candidates = index.candidates(username);
+        return candidates != null ? member.id.in(candidates).and(matches) : matches;
     }
 
 
@@ -0,0 +1,213 @@
+package study.querydsl.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.hibernate5.SpringBeanContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import study.querydsl.entity.Member;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Member 샤드로 쓰는 데이터소스와 EntityManagerFactory 묶음. app.shard.count 가 있을 때만 만들어진다.
+ *
+ * 기본 데이터소스 / EntityManagerFactory 와는 별개이며 빈으로 등록하지 않는다.
+ * (EntityManagerFactory 빈이 여러 개가 되면 부트의 JPA 자동 설정이 물러난다)
+ * 엔티티 리스너(MemberTeamEntityListener)는 꺼둔다. 샤드의 변경은 기본 DB 의 change outbox 나 캐시로 가지 않는다.
+ *
+ * 샤드마다 id 가 겹치지 않도록 ID_SPACE(2^40) 단위로 시퀀스 시작 값을 나눈다. id 만 보고 어느 샤드인지 알 수 있다.
+ * ddl-auto 가 create 계열이면 시작할 때 직접 맞추고, 그 외(update, validate, none)에는 스키마를 만들 때 아래처럼 맞춰둬야 한다.
+ * <pre>
+ * -- shard 번호가 n 일 때 (n = 0 은 기본값 그대로 둔다)
+ * alter sequence member_seq restart with n * 1099511627776 + 1000;
+ * alter sequence team_seq restart with n * 1099511627776 + 1000;
+ * </pre>
+ * 어느 경우든 시작할 때 샤드마다 시퀀스 값이 자기 구간 안에 있는지 확인하고, 아니면 기동을 멈춘다.
+ * (확인하느라 시퀀스 값을 하나 쓴다)
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.shard", name = "count")
+public class MemberShards {
+
+    static final long ID_SPACE = 1L << 40;
+    //Member, Team 의 @SequenceGenerator allocationSize
+    static final long ALLOCATION_SIZE = 100;
+    static final String[] SEQUENCES = {"member_seq", "team_seq"};
+
+    private final List<HikariDataSource> dataSources = new ArrayList<>();
+    private final List<EntityManagerFactory> emfs = new ArrayList<>();
+    private final AtomicLongArray queryCounts;
+
+    public MemberShards(EntityManagerFactoryBuilder builder,
+                        ConfigurableListableBeanFactory beanFactory,
+                        @Value("${app.shard.count}") int count,
+                        @Value("${app.shard.url:jdbc:h2:mem:shard{0};DB_CLOSE_DELAY=-1}") String url,
+                        @Value("${app.shard.ddl-auto:create}") String ddlAuto) {
+        Assert.isTrue(count > 0, "app.shard.count 는 1 이상이어야 합니다.");
+        this.queryCounts = new AtomicLongArray(count);
+
+        try {
+            for (int shard = 0; shard < count; shard++) {
+                HikariDataSource dataSource = DataSourceBuilder.create()
+                        .type(HikariDataSource.class)
+                        .url(url.replace("{0}", String.valueOf(shard)))
+                        .username("sa")
+                        .password("")
+                        .build();
+                dataSources.add(dataSource);
+
+                Map<String, Object> properties = new HashMap<>();
+                properties.put(AvailableSettings.HBM2DDL_AUTO, ddlAuto);
+                properties.put(AvailableSettings.BEAN_CONTAINER, new SpringBeanContainer(beanFactory));
+                //샤드 id 는 기본 DB 의 id 가 아니므로 변경 이벤트(outbox, 캐시, 색인)를 내지 않는다.
+                properties.put(AvailableSettings.JPA_CALLBACKS_ENABLED, false);
+                //기본 EntityManagerFactory 와 같은 이름 규칙
+                properties.put(AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName());
+                properties.put(AvailableSettings.IMPLICIT_NAMING_STRATEGY, SpringImplicitNamingStrategy.class.getName());
+
+                LocalContainerEntityManagerFactoryBean factory = builder
+                        .dataSource(dataSource)
+                        .packages(Member.class)
+                        .persistenceUnit("shard" + shard)
+                        .properties(properties)
+                        .build();
+                factory.afterPropertiesSet();
+                emfs.add(factory.getObject());
+
+                if (shard > 0 && ddlAuto.startsWith("create")) {
+                    restartSequences(shard);
+                }
+                checkSequences(shard);
+            }
+        } catch (RuntimeException e) {
+            //이미 만든 샤드의 커넥션 풀을 남기지 않는다.
+            close();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        emfs.forEach(EntityManagerFactory::close);
+        dataSources.forEach(HikariDataSource::close);
+    }
+
+    public int count() {
+        return emfs.size();
+    }
+
+    public int shardOfId(long id) {
+        return (int) (id / ID_SPACE);
+    }
+
+    /**
+     * 샤드별로 실행된 작업 수. (라우팅 확인용)
+     */
+    public long queryCount(int shard) {
+        return queryCounts.get(shard);
+    }
+
+    /**
+     * shard 의 EntityManager 와 트랜잭션 안에서 work 를 실행하고 커밋한다.
+     * 샤드 사이의 트랜잭션은 묶이지 않는다.
+     */
+    public <T> T inTransaction(int shard, Function<EntityManager, T> work) {
+        return execute(shard, work, true);
+    }
+
+    /**
+     * 읽기만 하는 작업. 끝나면 롤백한다.
+     */
+    public <T> T inReadOnly(int shard, Function<EntityManager, T> work) {
+        return execute(shard, work, false);
+    }
+
+    private <T> T execute(int shard, Function<EntityManager, T> work, boolean commit) {
+        queryCounts.incrementAndGet(shard);
+        EntityManager em = emfs.get(shard).createEntityManager();
+        try {
+            em.getTransaction().begin();
+            try {
+                T result = work.apply(em);
+                if (commit) {
+                    em.getTransaction().commit();
+                }
+                return result;
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    //시퀀스를 샤드의 id 구간에서 시작하게 한다. pooled 옵티마이저는 받은 값에서 allocationSize 만큼 앞부터 쓰므로 여유를 둔다.
+    private void restartSequences(int shard) {
+        //스키마 생성이 백그라운드(deferred)일 수도 있으므로 끝날 때까지 기다린다.
+        emfs.get(shard).createEntityManager().close();
+
+        try (Connection connection = dataSources.get(shard).getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sequence : SEQUENCES) {
+                statement.execute("alter sequence " + sequence + " restart with " + sequenceStart(shard));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("샤드 " + shard + " 의 시퀀스를 설정하지 못했습니다.", e);
+        }
+    }
+
+    //시퀀스 값이 샤드 구간 밖이면 다른 샤드와 id 가 겹치고 shardOfId 가 틀린 샤드를 가리키므로 기동을 멈춘다.
+    private void checkSequences(int shard) {
+        Dialect dialect = emfs.get(shard).unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        //pooled 옵티마이저는 받은 값에서 ALLOCATION_SIZE - 1 만큼 앞의 id 부터 쓴다.
+        long lower = shard == 0 ? 1 : shard * ID_SPACE + ALLOCATION_SIZE;
+        long upper = (shard + 1) * ID_SPACE;
+
+        try (Connection connection = dataSources.get(shard).getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sequence : SEQUENCES) {
+                long value;
+                try (ResultSet resultSet = statement.executeQuery(dialect.getSequenceNextValString(sequence))) {
+                    resultSet.next();
+                    value = resultSet.getLong(1);
+                }
+                if (value < lower || value >= upper) {
+                    throw new IllegalStateException("샤드 " + shard + " 의 " + sequence + " 값(" + value + ")이 샤드 구간 ["
+                            + lower + ", " + upper + ") 밖입니다. alter sequence " + sequence + " restart with "
+                            + sequenceStart(shard) + " 로 맞춰주세요.");
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("샤드 " + shard + " 의 시퀀스를 확인하지 못했습니다.", e);
+        }
+    }
+
+    private static long sequenceStart(int shard) {
+        return shard == 0 ? 1 : shard * ID_SPACE + 1000;
+    }
+}
@@ -0,0 +1,277 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.event.EntityChangeType;
+import study.querydsl.event.MemberBulkChangedEvent;
+import study.querydsl.event.MemberChangedEvent;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * member.username 의 메모리 trigram 색인. username 중간 일치(CONTAINS) 검색에서 후보 id 를 줄이는 데 쓴다.
+ *
+ * 색인은 항상 실제 데이터보다 넓게(false positive 는 있어도 false negative 는 없게) 유지한다.
+ * - 추가는 이벤트를 받자마자 반영하고, 빼는 것은 커밋된 뒤에만 반영한다. 롤백되면 남는 조각은 like 확인에서 걸러진다.
+ * - 아직 커밋되지 않은 추가는 따로 기억해두었다가 색인을 다시 만들 때 새 색인에도 넣는다.
+ * - 벌크 update/delete 는 어떤 이름이 바뀌었는지 알 수 없으므로 색인을 stale 로 표시하고 다시 만든다.
+ * stale 인 동안 candidates 는 null 을 돌려주고, 호출하는 쪽은 일반 like 로 조회한다.
+ *
+ * 색인은 이 JVM 의 엔티티 이벤트로만 갱신된다. 다른 애플리케이션 인스턴스나 SQL 로 직접 바꾼 회원은 다음 재생성 전까지
+ * 검색에서 빠지므로, 모든 쓰기가 이 인스턴스를 거치는 경우에만 app.member.username-index.enabled=true 로 켠다. (기본은 꺼짐)
+ * 회원 수가 max-members 를 넘으면 메모리를 쓰지 않도록 색인을 비우고 like 로만 조회한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.member.username-index", name = "enabled", havingValue = "true")
+public class MemberUsernameIndex {
+
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TaskExecutor taskExecutor;
+    private final int maxCandidates;
+    private final long maxMembers;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    //아래 필드는 lock 으로 보호한다.
+    private TrigramIndex index = new TrigramIndex();
+    private boolean stale = true;
+    //회원이 너무 많아 색인을 비워둔 상태. 다시 만들 때까지 변경도 반영하지 않는다.
+    private boolean tooLarge;
+    private long generation;
+    //다시 만드는 동안 들어온 변경. 새 색인에 한 번 더 적용한다.
+    private List<Consumer<TrigramIndex>> pending;
+    //색인에는 넣었지만 아직 커밋/롤백되지 않은 추가. 다시 읽어도 보이지 않으므로 새 색인에 한 번 더 넣는다.
+    private final Set<MemberChangedEvent> uncommitted = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public MemberUsernameIndex(EntityManager em,
+                               PlatformTransactionManager transactionManager,
+                               TaskExecutor taskExecutor,
+                               @Value("${app.member.username-index.max-candidates:1000}") int maxCandidates,
+                               @Value("${app.member.username-index.max-members:100000}") long maxMembers) {
+        this.em = em;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.taskExecutor = taskExecutor;
+        this.maxCandidates = maxCandidates;
+        this.maxMembers = maxMembers;
+    }
+
+    /**
+     * term 을 username 에 포함할 수 있는 회원 id 후보. 색인을 쓸 수 없으면 null.
+     */
+    public Collection<Long> candidates(String term) {
+        lock.readLock().lock();
+        try {
+            return stale ? null : index.candidates(term, maxCandidates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isStale() {
+        lock.readLock().lock();
+        try {
+            return stale;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //기동을 늦추지 않도록 색인은 기동이 끝난 뒤 백그라운드에서 만든다.
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild();
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        if (event.getType() != EntityChangeType.DELETE) {
+            String username = event.getCurrent().getUsername();
+            lock.writeLock().lock();
+            try {
+                if (!tooLarge) {
+                    uncommitted.add(event);
+                }
+                apply(target -> target.add(event.getMemberId(), username));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void afterMemberChanged(MemberChangedEvent event) {
+        long memberId = event.getMemberId();
+        String username = event.getCurrent().getUsername();
+        if (event.getType() == EntityChangeType.DELETE) {
+            apply(target -> target.remove(memberId, username));
+            return;
+        }
+        //색인을 다시 만드는 중에 커밋되었을 수도 있으므로 INSERT 도 한 번 더 추가한다.
+        String previous = event.getPrevious() != null ? event.getPrevious().getUsername() : null;
+        apply(target -> {
+            target.removeExcept(memberId, previous, username);
+            target.add(memberId, username);
+        });
+    }
+
+    //커밋(afterMemberChanged 가 먼저 반영)이든 롤백이든 끝났으면 더 이상 다시 넣을 필요가 없다.
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void afterMemberChangeCompleted(MemberChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            uncommitted.remove(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onMemberBulkChanged(MemberBulkChangedEvent event) {
+        markStale();
+    }
+
+    //롤백되어도 stale 로 남지 않도록 커밋/롤백 모두 다시 만든다.
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void afterMemberBulkChanged(MemberBulkChangedEvent event) {
+        //커밋 전에 시작된 재생성은 바뀐 이름을 못 봤을 수 있으므로 다시 표시한다.
+        markStale();
+        scheduleRebuild();
+    }
+
+    boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    public void scheduleRebuild() {
+        if (rebuilding.compareAndSet(false, true)) {
+            taskExecutor.execute(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        long started;
+        lock.writeLock().lock();
+        try {
+            started = generation;
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        TrigramIndex rebuilt = new TrigramIndex();
+        boolean reschedule;
+        boolean loaded;
+        try {
+            loaded = readOnlyTransaction.execute(status -> {
+                long members = em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+                if (members > maxMembers) {
+                    log.warn("회원 수({})가 app.member.username-index.max-members({})를 넘어서 username 색인을 쓰지 않습니다.",
+                            members, maxMembers);
+                    return false;
+                }
+                em.createQuery("select m.id, m.username from Member m", Object[].class)
+                        .setHint(QueryHints.HINT_FETCH_SIZE, 1000)
+                        .setHint(QueryHints.HINT_READONLY, true)
+                        .getResultStream()
+                        .forEach(row -> rebuilt.add((Long) row[0], (String) row[1]));
+                return true;
+            });
+        } catch (RuntimeException e) {
+            log.warn("username 색인을 만들지 못했습니다. 다음 벌크 변경 때 다시 시도합니다.", e);
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            rebuilding.set(false);
+            return;
+        }
+
+        if (!loaded) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+                index = new TrigramIndex();
+                tooLarge = true;
+                stale = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            rebuilding.set(false);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Consumer<TrigramIndex> change : pending) {
+                change.accept(rebuilt);
+            }
+            //다시 만들기 전에 다른 트랜잭션이 넣고 아직 커밋하지 않은 이름. 그 트랜잭션 안의 검색이 놓치지 않게 한다.
+            for (MemberChangedEvent event : uncommitted) {
+                rebuilt.add(event.getMemberId(), event.getCurrent().getUsername());
+            }
+            pending = null;
+            index = rebuilt;
+            tooLarge = false;
+            stale = generation != started;
+            reschedule = stale;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        rebuilding.set(false);
+
+        if (reschedule) {
+            scheduleRebuild();
+        }
+    }
+
+    private void apply(Consumer<TrigramIndex> change) {
+        lock.writeLock().lock();
+        try {
+            if (tooLarge) {
+                return;
+            }
+            change.accept(index);
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void markStale() {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            stale = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package study.querydsl.repository;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TeamAggregateHaving;
+import study.querydsl.dto.TeamAggregates;
+import study.querydsl.event.MemberBulkChangedEvent;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.TeamChangedEvent;
+
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * 같은 트랜잭션 안에서 같은 조건으로 들어온 검색을 한 번만 실행하고 결과를 재사용한다.
+ * 트랜잭션이 없으면 그대로 MemberRepository 를 호출한다.
+ *
+ * 같은 트랜잭션에서 Member, Team 이 변경되면 (MemberTeamEntityListener 이벤트) 저장된 결과를 모두 버린다.
+ * 반환되는 결과는 호출한 곳끼리 공유되므로 수정하면 안 된다.
+ */
+@Component
+public class MemoizingMemberSearch implements MemberJpaRepositoryCustom {
+
+    private final MemberRepository memberRepository;
+    private final EntityManager em;
+
+    public MemoizingMemberSearch(MemberRepository memberRepository, EntityManager em) {
+        this.memberRepository = memberRepository;
+        this.em = em;
+    }
+
+    @Override
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return memoize(() -> memberRepository.search(condition), "search", condition.copy());
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        return memoize(() -> memberRepository.searchPageSimple(condition, pageable),
+                "searchPageSimple", condition.copy(), pageable);
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        return memoize(() -> memberRepository.searchPageComplex(condition, pageable),
+                "searchPageComplex", condition.copy(), pageable);
+    }
+
+    @Override
+    public List<List<MemberTeamDto>> searchBatch(List<MemberSearchCondition> conditions) {
+        List<MemberSearchCondition> copies = new ArrayList<>(conditions.size());
+        for (MemberSearchCondition condition : conditions) {
+            copies.add(condition.copy());
+        }
+        return memoize(() -> memberRepository.searchBatch(conditions), "searchBatch", copies);
+    }
+
+    @Override
+    public MemberTeamColumns searchColumns(MemberSearchCondition condition) {
+        return memoize(() -> memberRepository.searchColumns(condition), "searchColumns", condition.copy());
+    }
+
+    @Override
+    public TeamAggregates aggregateByTeam(MemberSearchCondition condition, TeamAggregateHaving having) {
+        return memoize(() -> memberRepository.aggregateByTeam(condition, having),
+                "aggregateByTeam", condition.copy(), having != null ? having.copy() : null);
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onMemberBulkChanged(MemberBulkChangedEvent event) {
+        invalidate();
+    }
+
+    /**
+     * 현재 트랜잭션에 저장된 결과를 버린다.
+     */
+    public void invalidate() {
+        Memo memo = (Memo) TransactionSynchronizationManager.getResource(this);
+        if (memo != null) {
+            memo.results.clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T memoize(Supplier<T> query, Object... key) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query.get();
+        }
+
+        //실제 쿼리도 실행 전에 flush 하므로, 먼저 flush 해서 아직 반영 안 된 변경의 이벤트로 무효화되게 한다.
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && em.getFlushMode() == FlushModeType.AUTO) {
+            em.flush();
+        }
+
+        Memo memo = currentMemo();
+        List<Object> memoKey = Arrays.asList(key);
+        FutureTask<Object> task = new FutureTask<>(query::get);
+        FutureTask<Object> inFlight = memo.results.putIfAbsent(memoKey, task);
+        if (inFlight == null) {
+            inFlight = task;
+            task.run();
+        }
+
+        try {
+            return (T) inFlight.get();
+        } catch (ExecutionException e) {
+            memo.results.remove(memoKey, inFlight);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Memo currentMemo() {
+        Memo memo = (Memo) TransactionSynchronizationManager.getResource(this);
+        if (memo == null) {
+            memo = new Memo();
+            TransactionSynchronizationManager.bindResource(this, memo);
+            TransactionSynchronizationManager.registerSynchronization(new MemoSynchronization(memo));
+        }
+        return memo;
+    }
+
+    private static class Memo {
+        private final ConcurrentMap<List<Object>, FutureTask<Object>> results = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * REQUIRES_NEW 로 트랜잭션이 중단되면 결과도 같이 내려두고, 트랜잭션이 끝나면 버린다.
+     */
+    private class MemoSynchronization implements TransactionSynchronization {
+
+        private final Memo memo;
+
+        MemoSynchronization(Memo memo) {
+            this.memo = memo;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(MemoizingMemberSearch.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(MemoizingMemberSearch.this, memo);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(MemoizingMemberSearch.this);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.UsernameConditions.usernameMatches;
+
+/**
+ * Member 를 팀 단위로 여러 샤드(MemberShards)에 나눠 저장하고 조회한다.
+ *
+ * 팀은 만들 때 샤드를 하나 정하고, 그 팀의 회원은 모두 같은 샤드에 저장한다. (팀이 없는 회원은 username 으로 정한다)
+ * 팀 id 로 샤드를 알 수 있으므로 팀 이름 -> 팀 id 목록(teamDirectory)만 메모리에 들고 있으면 된다.
+ *
+ * 팀 이름 조건이 있는 검색은 그 팀이 있는 샤드에만 보내고, 나머지는 모든 샤드에 동시에 보낸 뒤
+ * 샤드마다 정렬된 결과를 (정렬 기준, 회원 id, 샤드 순서) 로 병합한다.
+ * 페이징은 샤드마다 offset + size 개를 가져와서 병합하므로 뒤쪽 페이지일수록 비싸다.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.shard", name = "count")
+public class ShardedMemberRepository {
+
+    private final MemberShards shards;
+    private final ExecutorService executor;
+    private final AtomicInteger nextTeamShard = new AtomicInteger();
+    private final ConcurrentMap<String, Set<Long>> teamDirectory = new ConcurrentHashMap<>();
+
+    public ShardedMemberRepository(MemberShards shards,
+                                   @Value("${app.shard.threads-per-shard:4}") int threadsPerShard) {
+        this.shards = shards;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(shards.count() * threadsPerShard, runnable -> {
+            Thread thread = new Thread(runnable, "member-shard-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        loadTeamDirectory();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Team saveTeam(String name) {
+        int shard = Math.floorMod(nextTeamShard.getAndIncrement(), shards.count());
+        Team saved = shards.inTransaction(shard, em -> {
+            Team created = new Team(name);
+            em.persist(created);
+            return created;
+        });
+        registerTeam(saved.getName(), saved.getId());
+        return saved;
+    }
+
+    public Member saveMember(String username, int age, Long teamId) {
+        int shard = teamId != null
+                ? shards.shardOfId(teamId)
+                : Math.floorMod(username.hashCode(), shards.count());
+        return shards.inTransaction(shard, em -> {
+            Member created = new Member(username, age, teamId != null ? em.getReference(Team.class, teamId) : null);
+            em.persist(created);
+            return created;
+        });
+    }
+
+    /**
+     * MemberJpaRepositoryCustom.search 와 같은 조건. 결과는 회원 id 순이다.
+     */
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        List<List<MemberTeamDto>> parts = scatter(targetShards(condition), em -> selectDto(em, condition)
+                .orderBy(member.id.asc())
+                .fetch());
+        return merge(parts, Comparator.comparing(MemberTeamDto::getMemberId), 0, Integer.MAX_VALUE);
+    }
+
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        long limit = pageable.getOffset() + pageable.getPageSize();
+        List<ShardPage> parts = scatter(targetShards(condition), em -> new ShardPage(
+                selectDto(em, condition)
+                        .orderBy(MemberOrderSpecifiers.orderBy(pageable.getSort()))
+                        .limit(limit)
+                        .fetch(),
+                where(new JPAQueryFactory(em).select(member.count()).from(member), condition)
+                        .fetchOne()));
+
+        List<List<MemberTeamDto>> contents = new ArrayList<>(parts.size());
+        long total = 0;
+        for (ShardPage part : parts) {
+            contents.add(part.content);
+            total += part.total;
+        }
+        List<MemberTeamDto> content = merge(contents, MemberOrderSpecifiers.comparator(pageable.getSort()),
+                pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * 팀 이름 조건이 있으면 그 팀이 있는 샤드만, 아니면 모든 샤드.
+     * 모르는 팀 이름이면 다른 곳에서 만들어졌을 수도 있으므로 모든 샤드에 묻는다.
+     */
+    List<Integer> targetShards(MemberSearchCondition condition) {
+        Set<Long> teamIds = hasText(condition.getTeamName()) ? teamDirectory.get(condition.getTeamName()) : null;
+        Set<Integer> targets = new TreeSet<>();
+        if (teamIds != null) {
+            for (Long teamId : teamIds) {
+                targets.add(shards.shardOfId(teamId));
+            }
+        } else {
+            for (int shard = 0; shard < shards.count(); shard++) {
+                targets.add(shard);
+            }
+        }
+        return new ArrayList<>(targets);
+    }
+
+    private void loadTeamDirectory() {
+        for (int shard = 0; shard < shards.count(); shard++) {
+            shards.inReadOnly(shard, em -> new JPAQueryFactory(em)
+                    .select(team.name, team.id)
+                    .from(team)
+                    .fetch())
+                    .forEach(row -> registerTeam(row.get(team.name), row.get(team.id)));
+        }
+    }
+
+    private void registerTeam(String name, Long teamId) {
+        teamDirectory.computeIfAbsent(name, key -> ConcurrentHashMap.newKeySet()).add(teamId);
+    }
+
+    private <T> List<T> scatter(List<Integer> targets, Function<EntityManager, T> work) {
+        //샤드가 하나면 호출한 스레드에서 바로 실행한다.
+        if (targets.size() == 1) {
+            return Collections.singletonList(shards.inReadOnly(targets.get(0), work));
+        }
+
+        List<CompletableFuture<T>> futures = new ArrayList<>(targets.size());
+        for (Integer shard : targets) {
+            futures.add(CompletableFuture.supplyAsync(() -> shards.inReadOnly(shard, work), executor));
+        }
+        List<T> results = new ArrayList<>(targets.size());
+        for (CompletableFuture<T> future : futures) {
+            results.add(join(future));
+        }
+        return results;
+    }
+
+    /**
+     * 각각 comparator 순서로 정렬된 목록들을 k-way 병합해서 offset 부터 size 개를 꺼낸다.
+     * 같은 값이면 샤드 순서(parts 의 순서)로 정한다.
+     */
+    private List<MemberTeamDto> merge(List<List<MemberTeamDto>> parts, Comparator<MemberTeamDto> comparator,
+                                      long offset, int size) {
+        PriorityQueue<int[]> cursors = new PriorityQueue<>((a, b) -> {
+            int compared = comparator.compare(parts.get(a[0]).get(a[1]), parts.get(b[0]).get(b[1]));
+            return compared != 0 ? compared : Integer.compare(a[0], b[0]);
+        });
+        for (int part = 0; part < parts.size(); part++) {
+            if (!parts.get(part).isEmpty()) {
+                cursors.add(new int[]{part, 0});
+            }
+        }
+
+        List<MemberTeamDto> merged = new ArrayList<>();
+        long skipped = 0;
+        while (!cursors.isEmpty() && merged.size() < size) {
+            int[] cursor = cursors.poll();
+            MemberTeamDto row = parts.get(cursor[0]).get(cursor[1]);
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                merged.add(row);
+            }
+            if (++cursor[1] < parts.get(cursor[0]).size()) {
+                cursors.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private JPAQuery<MemberTeamDto> selectDto(EntityManager em, MemberSearchCondition condition) {
+        return where(new JPAQueryFactory(em)
+                .select(new QMemberTeamDto(member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member), condition);
+    }
+
+    private <T> JPAQuery<T> where(JPAQuery<T> query, MemberSearchCondition condition) {
+        return query
+                .leftJoin(member.team, team)
+                .where(
+                        usernameMatches(condition.getUsername(), condition.getUsernameMatch()),
+                        teamnameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                );
+    }
+
+    private <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private BooleanExpression teamnameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    private static class ShardPage {
+
+        private final List<MemberTeamDto> content;
+        private final long total;
+
+        ShardPage(List<MemberTeamDto> content, Long total) {
+            this.content = content;
+            this.total = total != null ? total : 0;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.NumberExpression;
+import study.querydsl.dto.TeamAggregates;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 팀별 집계 row 를 Tuple 이나 DTO 를 만들지 않고 TeamAggregates 의 배열에 바로 쓰는 프로젝션.
+ * newInstance 는 row 마다 같은 aggregates 를 돌려주므로 조회 결과 리스트는 버리고 aggregates 를 쓴다.
+ */
+class TeamAggregatesProjection extends FactoryExpressionBase<TeamAggregates> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Expression<?>> args;
+    private final transient TeamAggregates aggregates;
+
+    TeamAggregatesProjection(TeamAggregates aggregates,
+                             Expression<Long> teamId, Expression<String> teamName,
+                             NumberExpression<Long> count, NumberExpression<Integer> ageSum,
+                             NumberExpression<Integer> ageMin, NumberExpression<Integer> ageMax,
+                             NumberExpression<Double> ageAvg) {
+        super(TeamAggregates.class);
+        this.aggregates = aggregates;
+        this.args = Collections.unmodifiableList(Arrays.<Expression<?>>asList(
+                teamId, teamName, count, ageSum, ageMin, ageMax, ageAvg));
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    //JPQL sum(int) 은 Long 으로 나오는 등 선언 타입과 다를 수 있으므로 Number 로 받는다.
+    @Override
+    public TeamAggregates newInstance(Object... a) {
+        aggregates.add(((Number) a[0]).longValue(),
+                (String) a[1],
+                ((Number) a[2]).longValue(),
+                a[3] != null ? ((Number) a[3]).longValue() : 0L,
+                ((Number) a[4]).intValue(),
+                ((Number) a[5]).intValue(),
+                ((Number) a[6]).doubleValue());
+        return aggregates;
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+}
@@ -0,0 +1,103 @@
+package study.querydsl.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 문자열을 3글자 조각(trigram)으로 나눠서 조각마다 그 조각을 가진 id 를 모아둔 역색인.
+ * "%ber5%" 같은 중간 일치 검색은 "ber", "er5" 를 모두 가진 id 만 후보가 된다.
+ * 후보는 실제로 일치하지 않을 수도 있으므로 like 로 한 번 더 확인해야 한다.
+ *
+ * 동기화하지 않는다. (MemberUsernameIndex 가 lock 을 잡고 사용)
+ */
+public class TrigramIndex {
+
+    public static final int GRAM = 3;
+
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+
+    public void add(long id, String text) {
+        for (String gram : grams(text)) {
+            postings.computeIfAbsent(gram, key -> new HashSet<>()).add(id);
+        }
+    }
+
+    public void remove(long id, String text) {
+        removeExcept(id, text, null);
+    }
+
+    /**
+     * text 의 조각 중 keep 에는 없는 조각에서만 id 를 뺀다. (이름이 바뀌었을 때 겹치는 조각은 그대로 둔다)
+     */
+    public void removeExcept(long id, String text, String keep) {
+        Set<String> kept = grams(keep);
+        for (String gram : grams(text)) {
+            if (kept.contains(gram)) {
+                continue;
+            }
+            Set<Long> ids = postings.get(gram);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * term 을 포함할 수 있는 id 후보.
+     * term 이 GRAM 보다 짧거나 후보가 limit 보다 많으면 색인이 도움이 되지 않으므로 null 을 돌려준다.
+     */
+    public Set<Long> candidates(String term, int limit) {
+        Set<String> grams = grams(term);
+        if (grams.isEmpty()) {
+            return null;
+        }
+
+        List<Set<Long>> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            lists.add(ids);
+        }
+        //가장 작은 목록을 돌면서 나머지 목록에 모두 있는 id 만 남긴다.
+        //흔한 조각뿐인 검색어는 금방 limit 을 넘으므로 끝까지 돌지 않는다.
+        lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        Set<Long> result = new HashSet<>();
+        for (Long id : lists.get(0)) {
+            if (containsAll(lists, id)) {
+                result.add(id);
+                if (result.size() > limit) {
+                    return null;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean containsAll(List<Set<Long>> lists, Long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static Set<String> grams(String text) {
+        if (text == null || text.length() < GRAM) {
+            return Collections.emptySet();
+        }
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
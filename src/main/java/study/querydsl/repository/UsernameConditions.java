@@ -0,0 +1,51 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import study.querydsl.dto.UsernameMatch;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * MemberSearchCondition 의 username, usernameMatch 를 해석하는 규칙. 조회 조건과 메모리 비교가 같은 규칙을 쓰도록 모아둔다.
+ */
+final class UsernameConditions {
+
+    private UsernameConditions() {
+    }
+
+    static UsernameMatch matchOf(UsernameMatch match) {
+        return match != null ? match : UsernameMatch.EXACT;
+    }
+
+    static BooleanExpression usernameMatches(String username, UsernameMatch match) {
+        if (!hasText(username)) {
+            return null;
+        }
+        switch (matchOf(match)) {
+            case PREFIX:
+                return member.username.startsWith(username);
+            case CONTAINS:
+                return member.username.contains(username);
+            default:
+                return member.username.eq(username);
+        }
+    }
+
+    static boolean matches(String value, String username, UsernameMatch match) {
+        if (!hasText(username)) {
+            return true;
+        }
+        if (value == null) {
+            return false;
+        }
+        switch (matchOf(match)) {
+            case PREFIX:
+                return value.startsWith(username);
+            case CONTAINS:
+                return value.contains(username);
+            default:
+                return value.equals(username);
+        }
+    }
+}
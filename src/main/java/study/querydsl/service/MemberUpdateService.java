@@ -0,0 +1,97 @@
+package study.querydsl.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Member 변경을 충돌에 맞춰 처리하는 서비스.
+ *
+ * update 는 @Version 낙관적 락을 사용하고, 다른 트랜잭션이 먼저 커밋해서 충돌이 나면
+ * 잠깐 기다렸다가 (지수 백오프 + 지터) 새 트랜잭션에서 다시 읽고 다시 적용한다. maxAttempts 번까지 시도한다.
+ * 재시도마다 새 트랜잭션이 필요하므로 이미 트랜잭션 안에서는 호출할 수 없다.
+ *
+ * updateWithLock 은 비교를 위한 비관적 락(select ... for update) 버전이다.
+ */
+@Service
+public class MemberUpdateService {
+
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public MemberUpdateService(EntityManager em,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.member.update.max-attempts:10}") int maxAttempts,
+                               @Value("${app.member.update.initial-backoff-millis:5}") long initialBackoffMillis,
+                               @Value("${app.member.update.max-backoff-millis:200}") long maxBackoffMillis) {
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public void changeTeam(Long memberId, Long teamId) {
+        update(memberId, member -> member.changeTeam(em.getReference(Team.class, teamId)));
+    }
+
+    /**
+     * change 는 재시도할 때마다 새로 읽은 Member 로 다시 호출되므로 여러 번 실행되어도 괜찮아야 한다.
+     */
+    public void update(Long memberId, Consumer<Member> change) {
+        Assert.state(!TransactionSynchronizationManager.isActualTransactionActive(),
+                "재시도마다 새 트랜잭션을 시작해야 하므로 트랜잭션 밖에서 호출해야 합니다.");
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> change.accept(find(memberId, null)));
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    public void updateWithLock(Long memberId, Consumer<Member> change) {
+        transactionTemplate.executeWithoutResult(status ->
+                change.accept(find(memberId, LockModeType.PESSIMISTIC_WRITE)));
+    }
+
+    private Member find(Long memberId, LockModeType lockMode) {
+        Member member = lockMode == null
+                ? em.find(Member.class, memberId)
+                : em.find(Member.class, memberId, lockMode);
+        Assert.notNull(member, "회원이 없습니다. id=" + memberId);
+        return member;
+    }
+
+    //절반은 고정, 나머지 절반은 무작위로 기다려서 동시에 실패한 스레드들이 다시 한꺼번에 몰리지 않게 한다.
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        long half = ceiling / 2;
+        long sleepMillis = half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+        try {
+            Thread.sleep(sleepMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("재시도 대기 중 인터럽트되었습니다.", e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package study.querydsl.service;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+import study.querydsl.dto.MemberUpsertDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * username 을 기준으로 회원을 한 번에 넣거나 고친다.
+ *
+ * 한 건씩 findByUsername + save 하면 행마다 두 번씩 DB 를 왕복하므로,
+ * 팀과 회원을 IN 쿼리로 CHUNK_SIZE 개씩 미리 읽고, insert / update 는 JDBC 배치
+ * (hibernate.jdbc.batch_size, 시퀀스 allocationSize) 로 묶어서 보낸다.
+ * 청크마다 flush, clear 해서 영속성 컨텍스트가 배치 크기만큼 커지지 않게 한다.
+ * (같은 트랜잭션에서 이미 읽어둔 엔티티도 준영속 상태가 된다.)
+ *
+ * 같은 배치 안에 username 이 여러 번 나오면 마지막 값을 쓴다.
+ * DB 에 같은 username 의 회원이 여러 명 있으면 모두 고친다.
+ */
+@Service
+public class MemberUpsertService {
+
+    static final int CHUNK_SIZE = 1000;
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    public MemberUpsertService(EntityManager em) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+    }
+
+    @Transactional
+    public UpsertResult upsert(List<MemberUpsertDto> records) {
+        Map<String, MemberUpsertDto> latest = new LinkedHashMap<>();
+        Set<String> teamNames = new LinkedHashSet<>();
+        for (MemberUpsertDto record : records) {
+            Assert.hasText(record.getUsername(), "username 이 없는 회원은 upsert 할 수 없습니다.");
+            //LinkedHashMap 은 덮어써도 처음 들어온 순서를 유지한다.
+            latest.put(record.getUsername(), record);
+        }
+        for (MemberUpsertDto record : latest.values()) {
+            if (record.getTeamName() != null) {
+                teamNames.add(record.getTeamName());
+            }
+        }
+
+        Map<String, Long> teamIds = findTeamIds(new ArrayList<>(teamNames));
+        int teamsCreated = 0;
+        for (String teamName : teamNames) {
+            if (!teamIds.containsKey(teamName)) {
+                Team created = new Team(teamName);
+                em.persist(created);
+                teamIds.put(teamName, created.getId());
+                teamsCreated++;
+            }
+        }
+        em.flush();
+        em.clear();
+
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        List<String> usernames = new ArrayList<>(latest.keySet());
+        for (int from = 0; from < usernames.size(); from += CHUNK_SIZE) {
+            List<String> chunk = usernames.subList(from, Math.min(from + CHUNK_SIZE, usernames.size()));
+            Map<String, List<Member>> existing = findMembers(chunk);
+
+            for (String username : chunk) {
+                MemberUpsertDto record = latest.get(username);
+                Long teamId = record.getTeamName() != null ? teamIds.get(record.getTeamName()) : null;
+                //프록시만 만들고 팀을 읽지 않는다.
+                Team target = teamId != null ? em.getReference(Team.class, teamId) : null;
+
+                List<Member> members = existing.get(username);
+                if (members == null) {
+                    em.persist(new Member(username, record.getAge(), target));
+                    inserted++;
+                    continue;
+                }
+                for (Member found : members) {
+                    if (found.getAge() == record.getAge() && Objects.equals(teamIdOf(found), teamId)) {
+                        unchanged++;
+                        continue;
+                    }
+                    found.setAge(record.getAge());
+                    if (!Objects.equals(teamIdOf(found), teamId)) {
+                        found.changeTeam(target);
+                    }
+                    updated++;
+                }
+            }
+
+            em.flush();
+            em.clear();
+        }
+
+        return new UpsertResult(inserted, updated, unchanged, records.size() - latest.size(), teamsCreated);
+    }
+
+    private Map<String, Long> findTeamIds(List<String> teamNames) {
+        Map<String, Long> teamIds = new HashMap<>();
+        for (int from = 0; from < teamNames.size(); from += CHUNK_SIZE) {
+            List<Tuple> rows = queryFactory
+                    .select(team.name, team.id)
+                    .from(team)
+                    .where(team.name.in(teamNames.subList(from, Math.min(from + CHUNK_SIZE, teamNames.size()))))
+                    .orderBy(team.id.asc())
+                    .fetch();
+            //팀 이름이 겹치면 먼저 만들어진 팀을 쓴다.
+            for (Tuple row : rows) {
+                teamIds.putIfAbsent(row.get(team.name), row.get(team.id));
+            }
+        }
+        return teamIds;
+    }
+
+    private Map<String, List<Member>> findMembers(List<String> usernames) {
+        Map<String, List<Member>> members = new HashMap<>();
+        for (Member found : queryFactory
+                .selectFrom(member)
+                .where(member.username.in(usernames))
+                .fetch()) {
+            members.computeIfAbsent(found.getUsername(), key -> new ArrayList<>()).add(found);
+        }
+        return members;
+    }
+
+    //지연 로딩 프록시의 id 는 팀을 읽지 않고 가져온다.
+    private static Long teamIdOf(Member member) {
+        return member.getTeam() != null ? member.getTeam().getId() : null;
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * MemberUpsertService.upsert 결과 건수.
+ * duplicates 는 같은 배치 안에서 username 이 겹쳐서 뒤의 값으로 덮어쓴 건수다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class UpsertResult {
+
+    private final int inserted;
+    private final int updated;
+    private final int unchanged;
+    private final int duplicates;
+    private final int teamsCreated;
+}
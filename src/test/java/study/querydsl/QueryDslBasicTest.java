@@ -14,6 +14,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberDtoProjection;
 import study.querydsl.dto.QMemberDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
@@ -368,6 +369,19 @@ public class QueryDslBasicTest {
 
     }
 
+    @Test
+    public void findDtoByGeneratedProjection(){
+        JPAQueryFactory qf = new JPAQueryFactory(em);
+
+        List<MemberDto> fetch = qf.select(new MemberDtoProjection(member.username, member.age))
+                .from(member)
+                .orderBy(member.age.asc())
+                .fetch();
+
+        assertThat(fetch).extracting("name").containsExactly("member1", "member2", "member3", "member4");
+        assertThat(fetch).extracting("age").containsExactly(10, 20, 30, 40);
+    }
+
     @Test
     public void dynamicQuery_BooleanBuilder() {
         String usernameParam = "member1";
@@ -0,0 +1,104 @@
+package study.querydsl;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 기본 설정과 fast-startup 설정의 기동 ~ 첫 요청 응답까지의 시간을 비교한다.
+ * 애플리케이션을 여러 번 띄우므로 기본 test 태스크에서는 빠지고 ./gradlew benchmarkTest 로 실행한다.
+ */
+@Tag("benchmark")
+class StartupTimeTest {
+
+    static final int RUNS = 3;
+
+    @Test
+    public void timeToFirstRequest() throws Exception {
+        //테스트는 src/test/resources/application.yml 을 사용하므로 fast-startup 프로필 설정을 직접 넣어준다.
+        String[] fast = {
+                "spring.main.lazy-initialization=true",
+                "spring.data.jpa.repositories.bootstrap-mode=deferred"
+        };
+
+        //JIT / 클래스 로딩 차이를 줄이려고 한 번 먼저 띄워본다.
+        start("warmup", new String[0]);
+
+        List<Long> defaults = new ArrayList<>();
+        List<Long> fasts = new ArrayList<>();
+        for (int i = 0; i < RUNS; i++) {
+            defaults.add(start("default" + i, new String[0]));
+            fasts.add(start("fast" + i, fast));
+        }
+
+        System.out.println("time to first request(ms) default = " + defaults + ", fast-startup = " + fasts);
+        assertThat(median(fasts)).isLessThan(median(defaults));
+    }
+
+    private long start(String name, String[] extra) throws Exception {
+        List<String> properties = new ArrayList<>();
+        properties.add("server.port=0");
+        //컨텍스트를 닫으면 커넥션 풀과 함께 DB 도 사라지도록 DB_CLOSE_DELAY 를 주지 않는다.
+        properties.add("spring.datasource.url=jdbc:h2:mem:" + name);
+        properties.add("logging.level.org.hibernate.SQL=info");
+        properties.add("logging.level.org.hibernate.type=info");
+        for (String property : extra) {
+            properties.add(property);
+        }
+
+        long start = System.nanoTime();
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .profiles("local")
+                .properties(properties.toArray(new String[0]))
+                .run();
+        try {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            ResponseEntity<String> response = new RestTemplate()
+                    .getForEntity("http://localhost:" + port + "/actuator/health", String.class);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+            assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+            //초기 데이터는 기동 이후 백그라운드에서 들어간다.
+            assertThat(awaitSeeded(context.getBean(EntityManagerFactory.class))).isEqualTo(101L);
+            return elapsed;
+        } finally {
+            context.close();
+        }
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private long awaitSeeded(EntityManagerFactory emf) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        long count = 0;
+        while (System.currentTimeMillis() < deadline) {
+            EntityManager em = emf.createEntityManager();
+            try {
+                count = em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+            } finally {
+                em.close();
+            }
+            if (count == 101) {
+                break;
+            }
+            Thread.sleep(50);
+        }
+        return count;
+    }
+}
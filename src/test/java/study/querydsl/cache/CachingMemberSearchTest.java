@@ -0,0 +1,118 @@
+package study.querydsl.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 캐시는 읽기 전용 트랜잭션에서만 동작하므로 테스트 전체를 트랜잭션으로 감싸지 않고 직접 정리한다.
+ */
+@SpringBootTest
+class CachingMemberSearchTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    CachingMemberSearch cachingMemberSearch;
+
+    TransactionTemplate tx;
+    Long teamAId;
+    Long teamBId;
+    Long member1Id;
+
+    @BeforeEach
+    public void init(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("cacheTeamA");
+            Team teamB = new Team("cacheTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+
+            Member member1 = new Member("member1", 10, teamA);
+            em.persist(member1);
+            em.persist(new Member("member2", 30, teamA));
+            em.persist(new Member("member3", 30, teamB));
+
+            teamAId = teamA.getId();
+            teamBId = teamB.getId();
+            member1Id = member1.getId();
+        });
+    }
+
+    //엔티티 리스너를 거치도록 벌크 delete 대신 remove 로 지운다. 그래야 다음 테스트에 캐시가 남지 않는다.
+    @AfterEach
+    public void cleanup(){
+        tx.executeWithoutResult(status -> {
+            List<Long> teamIds = Arrays.asList(teamAId, teamBId);
+            em.createQuery("select m from Member m where m.team.id in :teamIds", Member.class)
+                    .setParameter("teamIds", teamIds)
+                    .getResultList()
+                    .forEach(em::remove);
+            em.flush();
+            for (Long teamId : teamIds) {
+                em.remove(em.find(Team.class, teamId));
+            }
+        });
+    }
+
+    @Test
+    public void cacheHit(){
+        List<MemberTeamDto> first = cachingMemberSearch.search(condition("cacheTeamA", null, null));
+        List<MemberTeamDto> second = cachingMemberSearch.search(condition("cacheTeamA", null, null));
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void insertEvictsOnlyAffectedTeam(){
+        List<MemberTeamDto> teamA = cachingMemberSearch.search(condition("cacheTeamA", null, null));
+        List<MemberTeamDto> teamB = cachingMemberSearch.search(condition("cacheTeamB", null, null));
+
+        tx.executeWithoutResult(status -> em.persist(new Member("member4", 40, em.find(Team.class, teamBId))));
+
+        assertThat(cachingMemberSearch.search(condition("cacheTeamA", null, null))).isSameAs(teamA);
+        assertThat(cachingMemberSearch.search(condition("cacheTeamB", null, null)))
+                .isNotSameAs(teamB)
+                .extracting("username").contains("member4");
+    }
+
+    @Test
+    public void updateEvictsOnlyAffectedAgeBand(){
+        List<MemberTeamDto> teens = cachingMemberSearch.search(condition("cacheTeamA", 10, 19));
+        List<MemberTeamDto> thirties = cachingMemberSearch.search(condition("cacheTeamA", 30, 39));
+
+        tx.executeWithoutResult(status -> em.find(Member.class, member1Id).setAge(15));
+
+        assertThat(cachingMemberSearch.search(condition("cacheTeamA", 30, 39))).isSameAs(thirties);
+        assertThat(cachingMemberSearch.search(condition("cacheTeamA", 10, 19)))
+                .isNotSameAs(teens)
+                .extracting("age").containsExactly(15);
+    }
+
+    private MemberSearchCondition condition(String teamName, Integer ageGoe, Integer ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return condition;
+    }
+}
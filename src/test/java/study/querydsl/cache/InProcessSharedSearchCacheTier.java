@@ -0,0 +1,46 @@
+package study.querydsl.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 테스트용 공유 계층. 같은 인스턴스를 여러 TieredSearchCache 에 넘기면 여러 노드처럼 동작한다.
+ */
+class InProcessSharedSearchCacheTier implements SharedSearchCacheTier {
+
+    private final LocalSearchCacheTier store = new LocalSearchCacheTier(10_000, Duration.ofHours(1));
+    private final List<SearchCacheTier> subscribers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void subscribe(SearchCacheTier local) {
+        subscribers.add(local);
+    }
+
+    @Override
+    public Object get(SearchCacheKey key) {
+        return store.get(key);
+    }
+
+    @Override
+    public void put(SearchCacheKey key, Object value) {
+        store.put(key, value);
+    }
+
+    @Override
+    public void evict(Collection<String> tags) {
+        store.evict(tags);
+        for (SearchCacheTier subscriber : subscribers) {
+            subscriber.evict(tags);
+        }
+    }
+
+    @Override
+    public void clear() {
+        store.clear();
+        for (SearchCacheTier subscriber : subscribers) {
+            subscriber.clear();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package study.querydsl.cache;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TieredSearchCacheTest {
+
+    @Test
+    public void coldKeyIsLoadedOnce() throws Exception {
+        TieredSearchCache cache = new TieredSearchCache(new LocalSearchCacheTier(100, Duration.ofMinutes(1)), null);
+        SearchCacheKey key = SearchCacheKey.of("search", teamCondition("teamA", null, null));
+
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get(key, () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return "rows";
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<Object> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("rows");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void evictByTeamAndAgeBand() {
+        TieredSearchCache cache = new TieredSearchCache(new LocalSearchCacheTier(100, Duration.ofMinutes(1)), null);
+        SearchCacheKey teamA = SearchCacheKey.of("search", teamCondition("teamA", null, null));
+        SearchCacheKey teamB = SearchCacheKey.of("search", teamCondition("teamB", null, null));
+        SearchCacheKey teamAThirties = SearchCacheKey.of("search", teamCondition("teamA", 30, 39));
+        cache.get(teamA, () -> "a");
+        cache.get(teamB, () -> "b");
+        cache.get(teamAThirties, () -> "a30");
+
+        List<String> tags = new ArrayList<>();
+        SearchCacheTags.addMemberTags(tags, "teamA", 15);
+        cache.evict(tags);
+
+        assertThat(cache.get(teamA, () -> "reloaded")).isEqualTo("reloaded");
+        assertThat(cache.get(teamB, () -> "reloaded")).isEqualTo("b");
+        assertThat(cache.get(teamAThirties, () -> "reloaded")).isEqualTo("a30");
+    }
+
+    @Test
+    public void sharedTierIsUsedAcrossNodesAndPropagatesEviction() {
+        InProcessSharedSearchCacheTier shared = new InProcessSharedSearchCacheTier();
+        TieredSearchCache node1 = new TieredSearchCache(new LocalSearchCacheTier(100, Duration.ofMinutes(1)), shared);
+        TieredSearchCache node2 = new TieredSearchCache(new LocalSearchCacheTier(100, Duration.ofMinutes(1)), shared);
+        SearchCacheKey key = SearchCacheKey.of("search", teamCondition("teamA", null, null));
+
+        node1.get(key, () -> "from node1");
+        assertThat(node2.get(key, () -> "from node2")).isEqualTo("from node1");
+
+        node1.evict(Collections.singletonList(SearchCacheTags.team("teamA")));
+        assertThat(node2.get(key, () -> "reloaded")).isEqualTo("reloaded");
+    }
+
+    private MemberSearchCondition teamCondition(String teamName, Integer ageGoe, Integer ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return condition;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package study.querydsl.controller;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * DB 왕복에 시간이 걸리는 상황(member 조회마다 50ms 지연)에서 요청 스레드를 4개로 줄여두고
+ * 동기(/v1) 와 비동기(/v2) 조회에 같은 부하를 준다.
+ * 부하가 걸린 동안 /actuator/health 를 불러서 비동기(/v2) 쪽에서 요청 스레드가 막히지 않는지 확인한다.
+ * 시간을 비교하므로 기본 test 태스크에서는 빠지고 ./gradlew benchmarkTest 로 실행한다. (기능 확인은 MemberControllerTest)
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=4",
+        "app.member.async.pool-size=16",
+        "app.member.async.queue-capacity=200"
+})
+class MemberControllerLoadTest {
+
+    static final int REQUESTS = 64;
+    static final long QUERY_DELAY_MILLIS = 50;
+
+    @TestConfiguration
+    static class SlowDatabase {
+
+        //p6spy 리스너로 member 조회에만 지연을 넣는다.
+        @Bean
+        SimpleJdbcEventListener queryDelay() {
+            return new SimpleJdbcEventListener() {
+                @Override
+                public void onBeforeAnyExecute(StatementInformation statementInformation) {
+                    //use_sql_comments 때문에 SQL 앞에 /* ... */ 주석이 붙으므로 startsWith 로는 찾을 수 없다.
+                    String sql = statementInformation.getSqlWithValues().toLowerCase();
+                    if (sql.contains("select") && sql.contains("from member")) {
+                        try {
+                            Thread.sleep(QUERY_DELAY_MILLIS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            };
+        }
+    }
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void init(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("loadTeam");
+            em.persist(team);
+            for (int i = 0; i < 20; i++) {
+                em.persist(new Member("loadMember" + i, i, team));
+            }
+        });
+    }
+
+    @AfterEach
+    public void clean(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("select m from Member m where m.username like 'loadMember%'", Member.class)
+                    .getResultList()
+                    .forEach(em::remove);
+            em.createQuery("select t from Team t where t.name = 'loadTeam'", Team.class)
+                    .getResultList()
+                    .forEach(em::remove);
+        });
+    }
+
+    @Test
+    public void syncVsAsync() throws Exception {
+        String query = "?teamName=loadTeam&page=0&size=5&sort=age,desc";
+
+        //커넥션 풀, JIT 준비
+        load("/v1/members" + query);
+        load("/v2/members" + query);
+
+        LoadResult sync = load("/v1/members" + query);
+        LoadResult async = load("/v2/members" + query);
+
+        System.out.println("sync  /v1: " + sync);
+        System.out.println("async /v2: " + async);
+
+        assertThat(sync.ok).isEqualTo(REQUESTS);
+        assertThat(async.ok).isEqualTo(REQUESTS);
+        //지연이 실제로 걸렸는지: 요청 스레드 4개로 64건을 처리하면 적어도 16번은 차례로 기다린다.
+        assertThat(sync.totalMillis).isGreaterThanOrEqualTo(REQUESTS / 4 * QUERY_DELAY_MILLIS);
+        //동기 조회는 요청 스레드를 모두 잡고 있어서 health 도 기다리지만, 비동기 조회 중에는 요청 스레드가 비어 있다.
+        assertThat(async.healthMillis).isLessThan(sync.healthMillis);
+        assertThat(async.totalMillis).isLessThan(sync.totalMillis);
+    }
+
+    private LoadResult load(String url) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(REQUESTS);
+        try {
+            long start = System.nanoTime();
+            List<Future<Integer>> responses = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                responses.add(clients.submit(() -> restTemplate.getForEntity(url, String.class).getStatusCodeValue()));
+            }
+
+            //부하 중간에 다른 요청이 얼마나 기다리는지
+            Thread.sleep(QUERY_DELAY_MILLIS);
+            long healthStart = System.nanoTime();
+            restTemplate.getForEntity("/actuator/health", String.class);
+            long healthMillis = (System.nanoTime() - healthStart) / 1_000_000;
+
+            int ok = 0;
+            for (Future<Integer> response : responses) {
+                if (response.get() == 200) {
+                    ok++;
+                }
+            }
+            return new LoadResult(ok, (System.nanoTime() - start) / 1_000_000, healthMillis);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    static class LoadResult {
+
+        final int ok;
+        final long totalMillis;
+        final long healthMillis;
+
+        LoadResult(int ok, long totalMillis, long healthMillis) {
+            this.ok = ok;
+            this.totalMillis = totalMillis;
+            this.healthMillis = healthMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "ok=" + ok + "/" + REQUESTS + ", total=" + totalMillis + "ms, health during load=" + healthMillis + "ms";
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.AsyncMemberSearch;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 조회 API 의 응답 코드. 부하를 준 시간 비교는 MemberControllerLoadTest (benchmark) 에서 한다.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @SpyBean
+    AsyncMemberSearch asyncMemberSearch;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void syncAndAsyncSearch() throws Exception {
+        mockMvc.perform(get("/v1/members").param("size", "5"))
+                .andExpect(status().isOk());
+
+        MvcResult result = mockMvc.perform(get("/v2/members").param("size", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void serviceUnavailableWhenQueueIsFull() throws Exception {
+        CompletableFuture<Object> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(new RejectedExecutionException());
+        doReturn(rejected).when(asyncMemberSearch).searchPageSimple(any(), any());
+
+        MvcResult result = mockMvc.perform(get("/v2/members"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    @Test
+    public void badRequestForUnknownSort() throws Exception {
+        MvcResult result = mockMvc.perform(get("/v2/members").param("sort", "unknown"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void rejectWhenSaturated() throws Exception {
+        //첫 조회가 끝나지 않도록 잡아둔다.
+        CountDownLatch release = new CountDownLatch(1);
+        MemberRepository blocking = mock(MemberRepository.class);
+        when(blocking.search(any())).thenAnswer(invocation -> {
+            release.await();
+            return Collections.emptyList();
+        });
+
+        //스레드 1개, 대기열 1개
+        AsyncMemberSearch small = new AsyncMemberSearch(blocking, transactionManager, 1, 1);
+        try {
+            MemberSearchCondition condition = new MemberSearchCondition();
+
+            List<CompletableFuture<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(small.search(condition));
+            }
+
+            release.countDown();
+
+            int rejected = 0;
+            for (CompletableFuture<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+                    rejected++;
+                }
+            }
+            //실행 중 1개 + 대기 1개를 넘는 요청은 기다리지 않고 바로 거절된다.
+            assertThat(rejected).isEqualTo(3);
+        } finally {
+            small.shutdown();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package study.querydsl.datasource;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * replica 2개를 primary 와 같은 인메모리 H2 에 연결해두고 커넥션이 어디로 가는지 센다.
+ * 쓰기 기록(ReadYourWrites)은 스레드 단위이므로 테스트마다 새 스레드(session)에서 실행한다.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {
+        "app.datasource.replica.urls=jdbc:h2:mem:test;LOCK_TIMEOUT=10000,jdbc:h2:mem:test;LOCK_TIMEOUT=10000",
+        "app.datasource.replica.read-your-writes-millis=60000"
+})
+class ReplicaRoutingDataSourceTest {
+
+    @Autowired
+    ReplicaRoutingDataSource dataSource;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    ExecutorService session;
+
+    @BeforeEach
+    public void init(){
+        tx = new TransactionTemplate(transactionManager);
+        session = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void clean(){
+        session.shutdownNow();
+        tx.executeWithoutResult(status -> em
+                .createQuery("select m from Member m where m.username like 'replicaMember%'", Member.class)
+                .getResultList()
+                .forEach(em::remove));
+    }
+
+    @Test
+    public void readOnlyRepositoryCallsGoToReplicas() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        long primaryBefore = dataSource.primaryConnections();
+        long replica0Before = dataSource.replicaConnections(0);
+        long replica1Before = dataSource.replicaConnections(1);
+
+        inSession(() -> {
+            memberRepository.search(condition);
+            memberRepository.search(condition);
+            memberJpaRepository.search(condition);
+            memberJpaRepository.search(condition);
+            return null;
+        });
+
+        assertThat(dataSource.primaryConnections() - primaryBefore).isZero();
+        //번갈아 보낸다.
+        assertThat(dataSource.replicaConnections(0) - replica0Before).isEqualTo(2);
+        assertThat(dataSource.replicaConnections(1) - replica1Before).isEqualTo(2);
+    }
+
+    @Test
+    public void readsInsideWriteTransactionUsePrimary() throws Exception {
+        long replicasBefore = replicaConnections();
+
+        inSession(() -> tx.execute(status -> memberRepository.search(new MemberSearchCondition())));
+
+        assertThat(replicaConnections() - replicasBefore).isZero();
+    }
+
+    @Test
+    public void readYourWritesAfterCommit() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("replicaMember1");
+
+        long primaryBefore = dataSource.primaryConnections();
+        long replicasBefore = replicaConnections();
+
+        List<MemberTeamDto> result = inSession(() -> {
+            tx.executeWithoutResult(status -> em.persist(new Member("replicaMember1", 10)));
+            return memberRepository.search(condition);
+        });
+
+        assertThat(result).extracting("username").containsExactly("replicaMember1");
+        //쓰기 1번 + 쓰기 직후의 읽기 1번
+        assertThat(dataSource.primaryConnections() - primaryBefore).isEqualTo(2);
+        assertThat(replicaConnections() - replicasBefore).isZero();
+
+        //다른 세션은 그대로 replica 를 쓴다.
+        ExecutorService otherSession = Executors.newSingleThreadExecutor();
+        try {
+            otherSession.submit(() -> memberRepository.search(condition)).get();
+        } finally {
+            otherSession.shutdownNow();
+        }
+        assertThat(replicaConnections() - replicasBefore).isEqualTo(1);
+    }
+
+    @Test
+    public void readThenWriteInOneRequest() throws Exception {
+        long primaryBefore = dataSource.primaryConnections();
+        long replicasBefore = replicaConnections();
+
+        //open-in-view 가 켜져 있으면 첫 읽기의 replica 커넥션을 쓰기와 이후 읽기가 그대로 이어 쓴다.
+        inSession(() -> mockMvc.perform(post("/test/read-then-write").param("username", "replicaMember1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("1")));
+
+        assertThat(replicaConnections() - replicasBefore).isEqualTo(1);
+        //쓰기와, 쓰기 직후의 읽기(read-your-writes)
+        assertThat(dataSource.primaryConnections() - primaryBefore).isEqualTo(2);
+    }
+
+    @Test
+    public void failFastWhenOpenInViewIsOn(){
+        assertThatThrownBy(() -> new ReplicaDataSourceConfig().dataSource(new DataSourceProperties(),
+                Collections.singletonList("jdbc:h2:mem:replica"), 1000, true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("open-in-view");
+    }
+
+    private <T> T inSession(Callable<T> work) throws Exception {
+        return session.submit(work).get();
+    }
+
+    private long replicaConnections() {
+        long total = 0;
+        for (int replica = 0; replica < dataSource.replicaCount(); replica++) {
+            total += dataSource.replicaConnections(replica);
+        }
+        return total;
+    }
+
+    @TestConfiguration
+    static class ReadThenWriteConfig {
+
+        @Bean
+        ReadThenWriteController readThenWriteController(MemberRepository memberRepository, EntityManager em,
+                                                         PlatformTransactionManager transactionManager) {
+            return new ReadThenWriteController(memberRepository, em, new TransactionTemplate(transactionManager));
+        }
+    }
+
+    //검색 -> 쓰기 -> 검색을 한 요청 안에서 한다.
+    @RestController
+    @RequiredArgsConstructor
+    static class ReadThenWriteController {
+
+        private final MemberRepository memberRepository;
+        private final EntityManager em;
+        private final TransactionTemplate tx;
+
+        @PostMapping("/test/read-then-write")
+        public int readThenWrite(@RequestParam String username) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setUsername(username);
+            memberRepository.search(condition);
+            tx.executeWithoutResult(status -> em.persist(new Member(username, 10)));
+            return memberRepository.search(condition).size();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package study.querydsl.event;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 커밋되어야 outbox 에 남으므로 테스트 트랜잭션 없이 TransactionTemplate 으로 커밋한다.
+ */
+@SpringBootTest
+@RecordApplicationEvents
+class ChangeOutboxTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ChangeOutbox changeOutbox;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    ApplicationEvents events;
+
+    TransactionTemplate tx;
+    long lastPosition;
+
+    @BeforeEach
+    public void init(){
+        tx = new TransactionTemplate(transactionManager);
+        lastPosition = tx.execute(status -> em
+                .createQuery("select coalesce(max(c.commitPosition), 0) from ChangeOutboxEntry c", Long.class)
+                .getSingleResult());
+    }
+
+    @AfterEach
+    public void clean(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("select m from Member m where m.username like 'outboxMember%'", Member.class)
+                    .getResultList()
+                    .forEach(em::remove);
+            em.createQuery("select t from Team t where t.name = 'outboxTeam'", Team.class)
+                    .getResultList()
+                    .forEach(em::remove);
+        });
+    }
+
+    @Test
+    public void insertThenUpdate(){
+        Long memberId = tx.execute(status -> {
+            Team team = new Team("outboxTeam");
+            em.persist(team);
+            Member member = new Member("outboxMember1", 10, team);
+            em.persist(member);
+            return member.getId();
+        });
+
+        //커밋할 때의 flush 에서 나오는 update 도 같은 트랜잭션의 outbox 에 남는다.
+        tx.executeWithoutResult(status -> em.find(Member.class, memberId).setAge(11));
+
+        List<ChangeBatchEvent> batches = batches();
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(0).getChanges())
+                .extracting("target", "type")
+                .containsExactlyInAnyOrder(tuple(ChangeTarget.TEAM, EntityChangeType.INSERT),
+                        tuple(ChangeTarget.MEMBER, EntityChangeType.INSERT));
+        assertThat(batches.get(1).getChanges())
+                .extracting("target", "type", "entityId")
+                .containsExactly(tuple(ChangeTarget.MEMBER, EntityChangeType.UPDATE, memberId));
+
+        //발행된 변경과 outbox 에 남은 변경이 같다.
+        List<ChangeRecord> published = batches.stream()
+                .flatMap(batch -> batch.getChanges().stream())
+                .collect(Collectors.toList());
+        assertThat(published).extracting("changeId").doesNotContainNull();
+        assertThat(changeOutbox.findAfter(lastPosition, 100))
+                .extracting("changeId", "position", "target", "type", "entityId")
+                .containsExactlyElementsOf(published.stream()
+                        .map(change -> tuple(change.getChangeId(), change.getPosition(), change.getTarget(),
+                                change.getType(), change.getEntityId()))
+                        .collect(Collectors.toList()));
+        //위치는 커밋 순서대로 빈틈없이 매겨진다.
+        assertThat(published).extracting("position")
+                .containsExactly(lastPosition + 1, lastPosition + 2, lastPosition + 3);
+    }
+
+    @Test
+    public void rollbackLeavesNothing(){
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("outboxMember1", 10));
+            em.flush();
+            status.setRollbackOnly();
+        });
+
+        assertThat(batches()).isEmpty();
+        assertThat(changeOutbox.findAfter(lastPosition, 100)).isEmpty();
+    }
+
+    @Test
+    public void bulkDeleteWithIdRange(){
+        List<Long> ids = tx.execute(status -> {
+            Member member1 = new Member("outboxMember1", 300);
+            Member member2 = new Member("outboxMember2", 301);
+            em.persist(member1);
+            em.persist(member2);
+            return Arrays.asList(member1.getId(), member2.getId());
+        });
+        events.clear();
+
+        tx.executeWithoutResult(status -> memberJpaRepository.bulkDeleteByAgeGt(299));
+
+        List<ChangeBatchEvent> batches = batches();
+        assertThat(batches).hasSize(1);
+        ChangeRecord change = batches.get(0).getChanges().get(0);
+        assertThat(change.isBulk()).isTrue();
+        assertThat(change.getType()).isEqualTo(EntityChangeType.DELETE);
+        assertThat(change.getMinId()).isEqualTo(ids.get(0));
+        assertThat(change.getMaxId()).isEqualTo(ids.get(1));
+        assertThat(changeOutbox.findAfter(lastPosition, 100)).extracting("minId", "maxId")
+                .contains(tuple(ids.get(0), ids.get(1)));
+    }
+
+    //QueryDslBasicTest 처럼 JPAQueryFactory 로 직접 실행한 벌크 연산도 범위 없이 남는다.
+    @Test
+    public void directBulkJpqlIsRecorded(){
+        tx.executeWithoutResult(status -> em.persist(new Member("outboxMember1", 10)));
+        events.clear();
+
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em)
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.username.like("outboxMember%"))
+                .execute());
+
+        List<ChangeBatchEvent> batches = batches();
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0).getChanges())
+                .extracting("target", "type", "entityId", "minId", "maxId")
+                .containsExactly(tuple(ChangeTarget.MEMBER, EntityChangeType.UPDATE, null, 0L, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void purgeBefore(){
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("outboxMember1", 10));
+            em.persist(new Member("outboxMember2", 20));
+        });
+        List<ChangeRecord> written = changeOutbox.findAfter(lastPosition, 100);
+        assertThat(written).hasSize(2);
+        long keep = written.get(1).getPosition();
+
+        assertThat(changeOutbox.purgeBefore(keep)).isGreaterThanOrEqualTo(1);
+
+        assertThat(changeOutbox.findAfter(0, 100)).extracting("position").containsExactly(keep);
+    }
+
+    @Test
+    public void purgeCreatedBefore(){
+        tx.executeWithoutResult(status -> em.persist(new Member("outboxMember1", 10)));
+
+        assertThat(changeOutbox.purgeCreatedBefore(LocalDateTime.now().minusDays(1))).isZero();
+        assertThat(changeOutbox.findAfter(lastPosition, 100)).hasSize(1);
+
+        changeOutbox.purgeCreatedBefore(LocalDateTime.now().plusSeconds(1));
+        assertThat(changeOutbox.findAfter(0, 100)).isEmpty();
+    }
+
+    private List<ChangeBatchEvent> batches() {
+        return events.stream(ChangeBatchEvent.class).collect(Collectors.toList());
+    }
+}
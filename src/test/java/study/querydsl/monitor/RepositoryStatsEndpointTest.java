@@ -0,0 +1,69 @@
+package study.querydsl.monitor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//테스트는 src/test/resources/application.yml 을 사용하므로 stats 프로필 설정을 직접 넣어준다.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "app.stats.slow-query-threshold-millis=0"
+})
+@ActiveProfiles({"test", "stats"})
+@Transactional
+class RepositoryStatsEndpointTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    RepositoryStatsEndpoint repositoryStatsEndpoint;
+
+    @BeforeEach
+    public void init(){
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.flush();
+        repositoryStatsEndpoint.reset();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void statsPerRepositoryMethod(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+        memberJpaRepository.search(condition);
+        memberJpaRepository.search(condition);
+
+        Map<String, Object> stats = repositoryStatsEndpoint.stats();
+
+        Map<String, Map<String, Object>> methods = (Map<String, Map<String, Object>>) stats.get("methods");
+        assertThat(methods).containsKey("MemberJpaRepository.search");
+        assertThat(methods.get("MemberJpaRepository.search").get("invocations")).isEqualTo(2L);
+        assertThat((Long) methods.get("MemberJpaRepository.search").get("queryExecutions")).isGreaterThanOrEqualTo(2L);
+
+        List<SlowQueryLog.SlowQuery> slowQueries = (List<SlowQueryLog.SlowQuery>) stats.get("slowQueries");
+        assertThat(slowQueries)
+                .filteredOn(query -> "MemberJpaRepository.search".equals(query.getMethod()))
+                .isNotEmpty()
+                .allMatch(query -> query.getSql().contains("'member1'"));
+    }
+}
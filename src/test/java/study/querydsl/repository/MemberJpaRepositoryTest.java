@@ -1,5 +1,6 @@
 package study.querydsl.repository;
 
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -11,6 +12,7 @@ import study.querydsl.entity.Team;
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -58,4 +60,57 @@ class MemberJpaRepositoryTest {
         assertThat(memberTeamDtos).extracting("username").containsExactly("member4");
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void changeTeamDoesNotLoadMemberList(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member member1 = new Member("member1",10,teamA);
+        em.persist(member1);
+        em.persist(new Member("member2",20,teamB));
+
+        em.flush();
+        em.clear();
+
+        Member member = em.find(Member.class, member1.getId());
+        Team target = em.getReference(Team.class, teamB.getId());
+        member.changeTeam(target);
+        em.flush();
+
+        assertThat(Hibernate.isInitialized(target)).isFalse();
+        assertThat(Hibernate.isInitialized(member.getTeam())).isFalse();
+    }
+
+    @Test
+    public void moveMembersToTeam(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member member1 = new Member("member1",10,teamA);
+        Member member2 = new Member("member2",20,teamA);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(new Member("member3",30,teamB));
+
+        em.flush();
+        em.clear();
+
+        Team target = em.find(Team.class, teamB.getId());
+        Member loaded = em.find(Member.class, member1.getId());
+
+        long count = memberJpaRepository.moveMembersToTeam(Arrays.asList(member1.getId(), member2.getId()), teamB.getId());
+
+        assertThat(count).isEqualTo(2);
+        assertThat(Hibernate.isInitialized(target.getMemberList())).isFalse();
+        assertThat(loaded.getTeam().getId()).isEqualTo(teamB.getId());
+        assertThat(loaded.getVersion()).isEqualTo(1L);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        assertThat(memberJpaRepository.search(condition)).extracting("username")
+                .containsExactlyInAnyOrder("member1", "member2", "member3");
+    }
+}
@@ -0,0 +1,109 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 파티션마다 새 EntityManager 로 읽기 때문에 데이터는 커밋해두고 테스트 후에 지운다.
+ */
+@SpringBootTest
+class MemberPartitionScannerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberPartitionScanner memberPartitionScanner;
+
+    TransactionTemplate tx;
+    Long teamAId;
+    Long teamBId;
+
+    @BeforeEach
+    public void init(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("scanTeamA");
+            Team teamB = new Team("scanTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 100; i++) {
+                em.persist(new Member("scanMember" + i, i, i % 2 == 0 ? teamA : teamB));
+            }
+            teamAId = teamA.getId();
+            teamBId = teamB.getId();
+        });
+    }
+
+    @AfterEach
+    public void cleanup(){
+        tx.executeWithoutResult(status -> {
+            List<Long> teamIds = Arrays.asList(teamAId, teamBId);
+            em.createQuery("select m from Member m where m.team.id in :teamIds", Member.class)
+                    .setParameter("teamIds", teamIds)
+                    .getResultList()
+                    .forEach(em::remove);
+            em.flush();
+            for (Long teamId : teamIds) {
+                em.remove(em.find(Team.class, teamId));
+            }
+        });
+    }
+
+    @Test
+    public void scanAggregatesAllPartitions(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("scanTeamA");
+
+        IntSummaryStatistics ages = memberPartitionScanner.scan(condition, 4,
+                Collectors.summarizingInt(MemberTeamDto::getAge));
+
+        assertThat(ages.getCount()).isEqualTo(50);
+        assertThat(ages.getSum()).isEqualTo(2450);
+        assertThat(ages.getMin()).isEqualTo(0);
+        assertThat(ages.getMax()).isEqualTo(98);
+    }
+
+    @Test
+    public void scanGroupsAcrossPartitions(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(50);
+
+        Map<String, Long> countByTeam = memberPartitionScanner.scan(condition, 3,
+                Collectors.groupingBy(MemberTeamDto::getTeamName, Collectors.counting()));
+
+        assertThat(countByTeam.get("scanTeamA")).isEqualTo(25);
+        assertThat(countByTeam.get("scanTeamB")).isEqualTo(25);
+    }
+
+    @Test
+    public void emptyResult(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("noSuchTeam");
+
+        List<MemberTeamDto> rows = memberPartitionScanner.scan(condition, 4, Collectors.toList());
+
+        assertThat(rows).isEmpty();
+    }
+}
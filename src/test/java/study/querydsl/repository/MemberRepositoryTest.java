@@ -0,0 +1,297 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TeamAggregateHaving;
+import study.querydsl.dto.TeamAggregates;
+import study.querydsl.dto.UsernameMatch;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "app.member.username-index.enabled=true")
+@Transactional
+class MemberRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberUsernameIndex usernameIndex;
+
+    @BeforeEach
+    public void init(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1",10,teamA);
+        Member member2 = new Member("member2",20,teamA);
+        Member member3 = new Member("member3",30,teamB);
+        Member member4 = new Member("member4",40,teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+    }
+
+    @Test
+    public void searchBatch(){
+        MemberSearchCondition byTeam = new MemberSearchCondition();
+        byTeam.setTeamName("teamA");
+
+        MemberSearchCondition byAge = new MemberSearchCondition();
+        byAge.setAgeGoe(35);
+
+        MemberSearchCondition byUsername = new MemberSearchCondition();
+        byUsername.setUsername("member3");
+
+        List<List<MemberTeamDto>> result = memberRepository.searchBatch(Arrays.asList(byTeam, byAge, byUsername));
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(0)).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        assertThat(result.get(1)).extracting("username").containsExactly("member4");
+        assertThat(result.get(2)).extracting("username").containsExactly("member3");
+    }
+
+    @Test
+    public void searchBatch_sameAsSearch(){
+        MemberSearchCondition empty = new MemberSearchCondition();
+
+        MemberSearchCondition teamB = new MemberSearchCondition();
+        teamB.setTeamName("teamB");
+        teamB.setAgeLoe(30);
+
+        List<List<MemberTeamDto>> result = memberRepository.searchBatch(Arrays.asList(empty, teamB));
+
+        assertThat(result.get(0)).containsExactlyInAnyOrderElementsOf(memberRepository.search(empty));
+        assertThat(result.get(1)).containsExactlyInAnyOrderElementsOf(memberRepository.search(teamB));
+    }
+
+    @Test
+    public void searchColumns(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(15);
+
+        MemberTeamColumns columns = memberRepository.searchColumns(condition);
+
+        assertThat(columns.size()).isEqualTo(3);
+        assertThat(columns.teamCount()).isEqualTo(2);
+        assertThat(columns.asList()).containsExactlyInAnyOrderElementsOf(memberRepository.search(condition));
+    }
+
+    @Test
+    public void searchUsernamePrefix(){
+        em.persist(new Member("xmember5", 50));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member");
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+
+        assertThat(memberRepository.search(condition)).extracting("username")
+                .containsExactlyInAnyOrder("member1", "member2", "member3", "member4");
+    }
+
+    @Test
+    public void searchUsernameContains() throws InterruptedException {
+        awaitUsernameIndex();
+        em.persist(new Member("xmember5", 50));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("ber5");
+        condition.setUsernameMatch(UsernameMatch.CONTAINS);
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("xmember5");
+
+        //trigram 보다 짧은 검색어는 like 로만 조회한다.
+        condition.setUsername("r3");
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("member3");
+
+        condition.setUsername("mber");
+        condition.setTeamName("teamB");
+        assertThat(memberRepository.search(condition)).extracting("username")
+                .containsExactlyInAnyOrder("member3", "member4");
+    }
+
+    @Test
+    public void searchUsernameContains_afterRename() throws InterruptedException {
+        awaitUsernameIndex();
+        Member member = new Member("before", 50);
+        em.persist(member);
+        em.flush();
+
+        member.setUsername("after");
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("fte");
+        condition.setUsernameMatch(UsernameMatch.CONTAINS);
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("after");
+
+        condition.setUsername("efo");
+        assertThat(memberRepository.search(condition)).isEmpty();
+    }
+
+    @Test
+    public void searchUsernameContains_uncommittedSurvivesRebuild() throws InterruptedException {
+        awaitUsernameIndex();
+        em.persist(new Member("uncommittedMember", 50));
+        em.flush();
+
+        //이 트랜잭션이 아직 커밋되지 않은 상태에서 색인을 다시 만든다. (다시 읽을 때는 이 회원이 보이지 않는다)
+        awaitRebuildFinished();
+        usernameIndex.scheduleRebuild();
+        awaitRebuildFinished();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("committedMem");
+        condition.setUsernameMatch(UsernameMatch.CONTAINS);
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("uncommittedMember");
+    }
+
+    @Test
+    public void searchBatch_usernameMatch(){
+        MemberSearchCondition prefix = new MemberSearchCondition();
+        prefix.setUsername("member");
+        prefix.setUsernameMatch(UsernameMatch.PREFIX);
+        prefix.setAgeLoe(20);
+
+        MemberSearchCondition contains = new MemberSearchCondition();
+        contains.setUsername("ber4");
+        contains.setUsernameMatch(UsernameMatch.CONTAINS);
+
+        List<List<MemberTeamDto>> result = memberRepository.searchBatch(Arrays.asList(prefix, contains));
+
+        assertThat(result.get(0)).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        assertThat(result.get(1)).extracting("username").containsExactly("member4");
+    }
+
+    @Test
+    public void searchPageSimple_sort(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        Page<MemberTeamDto> page = memberRepository.searchPageSimple(condition,
+                PageRequest.of(0, 3, Sort.by(Sort.Order.desc("age"))));
+
+        assertThat(page.getContent()).extracting("username").containsExactly("member4", "member3", "member2");
+        assertThat(page.getTotalElements()).isEqualTo(4);
+    }
+
+    @Test
+    public void searchPageComplex_sortTiebreaker(){
+        Team teamC = new Team("teamC");
+        em.persist(teamC);
+        em.persist(new Member("member5", 20, teamC));
+        em.persist(new Member("member6", 20, teamC));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(20);
+        Sort byAge = Sort.by("age");
+
+        //나이가 같아도 member.id 순서로 이어지므로 페이지가 겹치거나 빠지지 않는다.
+        List<MemberTeamDto> first = memberRepository.searchPageComplex(condition, PageRequest.of(0, 2, byAge)).getContent();
+        List<MemberTeamDto> second = memberRepository.searchPageComplex(condition, PageRequest.of(1, 2, byAge)).getContent();
+
+        assertThat(first).extracting("username").containsExactly("member2", "member5");
+        assertThat(second).extracting("username").containsExactly("member6");
+    }
+
+    @Test
+    public void searchPageSimple_sortByTeamName(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        Page<MemberTeamDto> page = memberRepository.searchPageSimple(condition,
+                PageRequest.of(0, 4, Sort.by(Sort.Order.desc("teamName"), Sort.Order.asc("username"))));
+
+        assertThat(page.getContent()).extracting("username").containsExactly("member3", "member4", "member1", "member2");
+    }
+
+    @Test
+    public void searchPageSimple_unknownSort(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        //리포지토리 프록시가 IllegalArgumentException 을 InvalidDataAccessApiUsageException 으로 바꾼다.
+        assertThatThrownBy(() -> memberRepository.searchPageSimple(condition, PageRequest.of(0, 3, Sort.by("team.memberList"))))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void aggregateByTeam(){
+        em.persist(new Member("teamless", 90));
+
+        TeamAggregates aggregates = memberRepository.aggregateByTeam(new MemberSearchCondition(), null);
+
+        assertThat(aggregates.size()).isEqualTo(2);
+        int teamA = aggregates.indexOf("teamA");
+        assertThat(aggregates.count(teamA)).isEqualTo(2);
+        assertThat(aggregates.ageSum(teamA)).isEqualTo(30);
+        assertThat(aggregates.ageMin(teamA)).isEqualTo(10);
+        assertThat(aggregates.ageMax(teamA)).isEqualTo(20);
+        assertThat(aggregates.ageAvg(teamA)).isEqualTo(15.0);
+
+        int teamB = aggregates.indexOf("teamB");
+        assertThat(aggregates.count(teamB)).isEqualTo(2);
+        assertThat(aggregates.ageAvg(teamB)).isEqualTo(35.0);
+    }
+
+    @Test
+    public void aggregateByTeam_having(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        TeamAggregateHaving having = new TeamAggregateHaving();
+        having.setCountGoe(2L);
+
+        TeamAggregates aggregates = memberRepository.aggregateByTeam(condition, having);
+
+        //teamA 는 나이 조건 때문에 1명만 남아서 HAVING 에서 빠진다.
+        assertThat(aggregates.size()).isEqualTo(1);
+        assertThat(aggregates.teamName(0)).isEqualTo("teamB");
+
+        having.setCountGoe(null);
+        having.setAgeAvgLoe(30.0);
+        aggregates = memberRepository.aggregateByTeam(condition, having);
+
+        assertThat(aggregates.size()).isEqualTo(1);
+        assertThat(aggregates.teamName(0)).isEqualTo("teamA");
+        assertThat(aggregates.count(0)).isEqualTo(1);
+    }
+
+    private void awaitRebuildFinished() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (usernameIndex.isRebuilding() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(usernameIndex.isRebuilding()).isFalse();
+    }
+
+    private void awaitUsernameIndex() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (usernameIndex.isStale() && System.currentTimeMillis() < deadline) {
+            usernameIndex.scheduleRebuild();
+            Thread.sleep(20);
+        }
+        assertThat(usernameIndex.isStale()).isFalse();
+    }
+}
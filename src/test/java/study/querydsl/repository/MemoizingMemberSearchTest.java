@@ -0,0 +1,75 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemoizingMemberSearchTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemoizingMemberSearch memoizingMemberSearch;
+
+    Team teamB;
+
+    @BeforeEach
+    public void init(){
+        Team teamA = new Team("teamA");
+        teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1",10,teamA));
+        em.persist(new Member("member2",20,teamA));
+        em.persist(new Member("member3",30,teamB));
+        em.persist(new Member("member4",40,teamB));
+    }
+
+    @Test
+    public void sameConditionReturnsMemoizedResult(){
+        List<MemberTeamDto> first = memoizingMemberSearch.search(teamB());
+        List<MemberTeamDto> second = memoizingMemberSearch.search(teamB());
+
+        assertThat(second).isSameAs(first);
+
+        Page<MemberTeamDto> page = memoizingMemberSearch.searchPageComplex(teamB(), PageRequest.of(0, 1));
+        assertThat(memoizingMemberSearch.searchPageComplex(teamB(), PageRequest.of(0, 1))).isSameAs(page);
+        assertThat(memoizingMemberSearch.searchPageComplex(teamB(), PageRequest.of(1, 1))).isNotSameAs(page);
+    }
+
+    @Test
+    public void writeInSameTransactionInvalidates(){
+        List<MemberTeamDto> before = memoizingMemberSearch.search(teamB());
+        assertThat(before).hasSize(2);
+
+        em.persist(new Member("member5", 50, teamB));
+
+        List<MemberTeamDto> after = memoizingMemberSearch.search(teamB());
+        assertThat(after).isNotSameAs(before);
+        assertThat(after).extracting("username").contains("member5");
+    }
+
+    private MemberSearchCondition teamB() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+        return condition;
+    }
+}
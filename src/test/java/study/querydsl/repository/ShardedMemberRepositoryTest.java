@@ -0,0 +1,192 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Team;
+import study.querydsl.event.ChangeBatchEvent;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.TeamChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 샤드 3개(각각 별도의 인메모리 H2)에 팀 6개, 팀마다 회원 10명을 나눠 넣고 라우팅과 병합 결과를 확인한다.
+ */
+@SpringBootTest(properties = "app.shard.count=3")
+@RecordApplicationEvents
+class ShardedMemberRepositoryTest {
+
+    static final int TEAMS = 6;
+    static final int MEMBERS_PER_TEAM = 10;
+
+    //테스트마다 팀 이름을 바꿔서 이전 테스트가 팀 목록에 남긴 id 와 섞이지 않게 한다.
+    static final AtomicInteger RUN = new AtomicInteger();
+
+    @Autowired
+    ShardedMemberRepository shardedMemberRepository;
+
+    @Autowired
+    MemberShards shards;
+
+    @Autowired
+    EntityManagerFactoryBuilder entityManagerFactoryBuilder;
+
+    @Autowired
+    ConfigurableListableBeanFactory beanFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationEvents events;
+
+    List<Team> teams;
+
+    @BeforeEach
+    public void init(){
+        int run = RUN.incrementAndGet();
+        teams = new ArrayList<>();
+        for (int i = 0; i < TEAMS; i++) {
+            Team team = shardedMemberRepository.saveTeam("shardTeam" + run + "-" + i);
+            teams.add(team);
+            for (int j = 0; j < MEMBERS_PER_TEAM; j++) {
+                //나이가 겹치도록 해서 정렬 동점 처리도 확인한다.
+                shardedMemberRepository.saveMember("shardMember" + i + "-" + j, (i * 7 + j) % 13, team.getId());
+            }
+        }
+        shardedMemberRepository.saveMember("shardMemberNoTeam", 5, null);
+    }
+
+    @AfterEach
+    public void clean(){
+        for (int shard = 0; shard < shards.count(); shard++) {
+            shards.inTransaction(shard, em -> {
+                em.createQuery("delete from Member m where m.username like 'shardMember%'").executeUpdate();
+                return em.createQuery("delete from Team t where t.name like 'shardTeam%'").executeUpdate();
+            });
+        }
+    }
+
+    @Test
+    public void teamsSpreadAcrossShards(){
+        assertThat(teams.stream().map(team -> shards.shardOfId(team.getId())).distinct())
+                .containsExactlyInAnyOrder(0, 1, 2);
+    }
+
+    @Test
+    public void singleTeamSearchGoesToOneShard(){
+        Team target = teams.get(4);
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(target.getName());
+
+        long[] before = queryCounts();
+        List<MemberTeamDto> result = shardedMemberRepository.search(condition);
+        long[] after = queryCounts();
+
+        assertThat(result).hasSize(MEMBERS_PER_TEAM);
+        assertThat(result).extracting("teamId").containsOnly(target.getId());
+        for (int shard = 0; shard < shards.count(); shard++) {
+            long expected = shard == shards.shardOfId(target.getId()) ? 1 : 0;
+            assertThat(after[shard] - before[shard]).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void crossTeamSearchMergesAllShards(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(3);
+        condition.setAgeLoe(9);
+
+        long[] before = queryCounts();
+        List<MemberTeamDto> result = shardedMemberRepository.search(condition);
+        long[] after = queryCounts();
+
+        for (int shard = 0; shard < shards.count(); shard++) {
+            assertThat(after[shard] - before[shard]).isEqualTo(1);
+        }
+        assertThat(result).extracting("age").allMatch(age -> (int) age >= 3 && (int) age <= 9);
+        assertThat(result).extracting("memberId").isSorted();
+        assertThat(result).extracting("username").contains("shardMemberNoTeam");
+    }
+
+    @Test
+    public void pagesMatchSortedUnion(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        List<MemberTeamDto> all = shardedMemberRepository.search(condition);
+        List<MemberTeamDto> expected = all.stream()
+                .sorted(Comparator.comparing(MemberTeamDto::getAge).reversed()
+                        .thenComparing(Comparator.comparing(MemberTeamDto::getMemberId).reversed()))
+                .collect(Collectors.toList());
+
+        int pageSize = 7;
+        List<MemberTeamDto> paged = new ArrayList<>();
+        for (int page = 0; page * pageSize < all.size(); page++) {
+            Page<MemberTeamDto> result = shardedMemberRepository.searchPageSimple(condition,
+                    PageRequest.of(page, pageSize, Sort.by(Sort.Direction.DESC, "age")));
+
+            assertThat(result.getTotalElements()).isEqualTo(all.size());
+            paged.addAll(result.getContent());
+        }
+
+        assertThat(paged).extracting("memberId")
+                .containsExactlyElementsOf(expected.stream().map(MemberTeamDto::getMemberId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shardWritesStayOutOfChangeFeed(){
+        events.clear();
+        Team team = teams.get(0);
+
+        //기본 DB 트랜잭션 안에서 샤드에 써도 그 트랜잭션의 outbox 에 섞이지 않는다.
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                shardedMemberRepository.saveMember("shardMemberInTx", 1, team.getId()));
+        shardedMemberRepository.saveMember("shardMemberNoTx", 2, team.getId());
+        shardedMemberRepository.saveTeam("shardTeamFeed" + RUN.get());
+
+        assertThat(events.stream(MemberChangedEvent.class)).isEmpty();
+        assertThat(events.stream(TeamChangedEvent.class)).isEmpty();
+        assertThat(events.stream(ChangeBatchEvent.class)).isEmpty();
+    }
+
+    @Test
+    public void failFastWhenSequenceIsOutsideShardRange(){
+        String url = "jdbc:h2:mem:sequenceCheck{0};DB_CLOSE_DELAY=-1";
+        MemberShards created = new MemberShards(entityManagerFactoryBuilder, beanFactory, 2, url, "create");
+        //스키마를 따로 관리하면서 시퀀스를 맞추지 않은 상태
+        created.inTransaction(1, em -> em.createNativeQuery("alter sequence member_seq restart with 1").executeUpdate());
+        created.close();
+
+        assertThatThrownBy(() -> new MemberShards(entityManagerFactoryBuilder, beanFactory, 2, url, "none"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("member_seq");
+    }
+
+    private long[] queryCounts() {
+        long[] counts = new long[shards.count()];
+        for (int shard = 0; shard < counts.length; shard++) {
+            counts[shard] = shards.queryCount(shard);
+        }
+        return counts;
+    }
+}
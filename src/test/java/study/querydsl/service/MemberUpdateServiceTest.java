@@ -0,0 +1,133 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 여러 스레드가 적은 수의 회원을 번갈아 다른 팀으로 옮기는 경합 상황에서
+ * 낙관적 락 + 재시도와 비관적 락의 처리량을 비교하고, 어느 쪽이든 변경이 사라지지 않는지 확인한다.
+ */
+@SpringBootTest
+class MemberUpdateServiceTest {
+
+    static final int THREADS = 8;
+    static final int OPS_PER_THREAD = 50;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberUpdateService memberUpdateService;
+
+    TransactionTemplate tx;
+    Long teamAId;
+    Long teamBId;
+    List<Long> memberIds;
+
+    @BeforeEach
+    public void init(){
+        tx = new TransactionTemplate(transactionManager);
+        memberIds = new ArrayList<>();
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("lockTeamA");
+            Team teamB = new Team("lockTeamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 4; i++) {
+                Member member = new Member("lockMember" + i, 20, teamA);
+                em.persist(member);
+                em.flush();
+                memberIds.add(member.getId());
+            }
+            teamAId = teamA.getId();
+            teamBId = teamB.getId();
+        });
+    }
+
+    @AfterEach
+    public void cleanup(){
+        tx.executeWithoutResult(status -> {
+            for (Long memberId : memberIds) {
+                em.remove(em.find(Member.class, memberId));
+            }
+            em.flush();
+            for (Long teamId : Arrays.asList(teamAId, teamBId)) {
+                em.remove(em.find(Team.class, teamId));
+            }
+        });
+    }
+
+    @Test
+    public void optimisticWithRetry() throws Exception {
+        long ops = runConcurrently("optimistic", memberId -> memberUpdateService.update(memberId, this::moveToOtherTeam));
+
+        assertThat(totalVersion()).isEqualTo(ops);
+    }
+
+    @Test
+    public void pessimisticLock() throws Exception {
+        long ops = runConcurrently("pessimistic", memberId -> memberUpdateService.updateWithLock(memberId, this::moveToOtherTeam));
+
+        assertThat(totalVersion()).isEqualTo(ops);
+    }
+
+    private void moveToOtherTeam(Member member) {
+        Long otherTeamId = teamAId.equals(member.getTeam().getId()) ? teamBId : teamAId;
+        member.changeTeam(em.getReference(Team.class, otherTeamId));
+    }
+
+    private long runConcurrently(String name, Consumer<Long> update) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int op = 0; op < OPS_PER_THREAD; op++) {
+                        update.accept(memberIds.get(ThreadLocalRandom.current().nextInt(memberIds.size())));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long ops = (long) THREADS * OPS_PER_THREAD;
+        long elapsedMillis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+        System.out.println(name + " = " + ops + " ops, " + elapsedMillis + " ms, " + (ops * 1000 / elapsedMillis) + " ops/s");
+        return ops;
+    }
+
+    //팀을 옮길 때마다 버전이 1씩 오르므로, 사라진 변경이 없다면 버전의 합이 실행 횟수와 같다.
+    private long totalVersion() {
+        return tx.execute(status -> em.createQuery(
+                        "select sum(m.version) from Member m where m.id in :ids", Long.class)
+                .setParameter("ids", memberIds)
+                .getSingleResult());
+    }
+}
@@ -0,0 +1,101 @@
+package study.querydsl.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.MemberUpsertDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class MemberUpsertServiceTest {
+
+    static final int NEW_MEMBERS = 2000;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberUpsertService memberUpsertService;
+
+    @BeforeEach
+    public void init(){
+        Team teamA = new Team("upsertTeamA");
+        em.persist(teamA);
+        em.persist(new Member("upsertMember1", 10, teamA));
+        em.persist(new Member("upsertMember2", 20, teamA));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void upsert(){
+        List<MemberUpsertDto> records = new ArrayList<>();
+        records.add(new MemberUpsertDto("upsertMember1", 11, "upsertTeamB"));
+        records.add(new MemberUpsertDto("upsertMember2", 20, "upsertTeamA"));
+        records.add(new MemberUpsertDto("upsertMember3", 30, null));
+        for (int i = 0; i < NEW_MEMBERS; i++) {
+            records.add(new MemberUpsertDto("upsertNew" + i, i % 100, "upsertTeamA"));
+        }
+        //같은 배치 안에서는 마지막 값이 남는다.
+        records.add(new MemberUpsertDto("upsertMember3", 33, "upsertTeamA"));
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        UpsertResult result = memberUpsertService.upsert(records);
+
+        assertThat(result.getInserted()).isEqualTo(NEW_MEMBERS + 1);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(result.getUnchanged()).isEqualTo(1);
+        assertThat(result.getDuplicates()).isEqualTo(1);
+        assertThat(result.getTeamsCreated()).isEqualTo(1);
+
+        //행마다 조회 + 저장을 하지 않는다. (IN 조회, 시퀀스, insert 배치가 100 건 단위)
+        System.out.println("statements = " + statistics.getPrepareStatementCount() + " for " + records.size() + " records");
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(NEW_MEMBERS / 10);
+
+        Member member1 = findByUsername("upsertMember1");
+        assertThat(member1.getAge()).isEqualTo(11);
+        assertThat(member1.getTeam().getName()).isEqualTo("upsertTeamB");
+
+        Member member3 = findByUsername("upsertMember3");
+        assertThat(member3.getAge()).isEqualTo(33);
+        assertThat(member3.getTeam().getName()).isEqualTo("upsertTeamA");
+
+        Long count = em.createQuery("select count(m) from Member m where m.username like 'upsertNew%'", Long.class)
+                .getSingleResult();
+        assertThat(count).isEqualTo(NEW_MEMBERS);
+    }
+
+    @Test
+    public void upsertTwiceIsUnchanged(){
+        List<MemberUpsertDto> records = new ArrayList<>();
+        records.add(new MemberUpsertDto("upsertMember1", 10, "upsertTeamA"));
+        records.add(new MemberUpsertDto("upsertMember4", 40, null));
+
+        memberUpsertService.upsert(records);
+        UpsertResult result = memberUpsertService.upsert(records);
+
+        assertThat(result.getInserted()).isZero();
+        assertThat(result.getUpdated()).isZero();
+        assertThat(result.getUnchanged()).isEqualTo(2);
+    }
+
+    private Member findByUsername(String username) {
+        return em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", username)
+                .getSingleResult();
+    }
+}